@@ -0,0 +1,78 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Base64;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * 基准测试使用的密钥、证书和报文，全部在本地生成，不需要网络和真实的商户信息
+ */
+public final class BenchmarkFixtures {
+
+    public static final byte[] API_V3_KEY = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    public static final String NONCE = "fdasflkja484";
+
+    private BenchmarkFixtures() {
+    }
+
+    public static SelfSignedCertificate newCertificate(int serialNumber) throws GeneralSecurityException {
+        return SelfSignedCertificate.generate(BigInteger.valueOf(serialNumber));
+    }
+
+    /**
+     * @return 长度为size个字节的JSON字符串
+     */
+    public static String jsonBody(int size) {
+        String prefix = "{\"description\":\"";
+        String suffix = "\"}";
+        char[] filler = new char[Math.max(0, size - prefix.length() - suffix.length())];
+        Arrays.fill(filler, 'a');
+        return prefix + new String(filler) + suffix;
+    }
+
+    /**
+     * @return 以APIv3密钥和{@link #NONCE}加密后的Base64密文
+     */
+    public static String encrypt(String associatedData, String plaintext) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(API_V3_KEY, "AES"),
+                new GCMParameterSpec(128, NONCE.getBytes(StandardCharsets.UTF_8)));
+        cipher.updateAAD(associatedData.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @return 与下载平台证书接口相同格式的应答体
+     */
+    public static String certificatesBody(SelfSignedCertificate... certificates) throws GeneralSecurityException {
+        StringBuilder body = new StringBuilder("{\"data\":[");
+        for (int i = 0; i < certificates.length; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append("{\"serial_no\":\"").append(certificates[i].getSerialNumber())
+                    .append("\",\"encrypt_certificate\":{\"algorithm\":\"AEAD_AES_256_GCM\",")
+                    .append("\"associated_data\":\"certificate\",\"nonce\":\"").append(NONCE)
+                    .append("\",\"ciphertext\":\"")
+                    .append(encrypt("certificate", certificates[i].toPem().replace("\r", "")))
+                    .append("\"}}");
+        }
+        return body.append("]}").toString();
+    }
+
+    /**
+     * @return 与回调通知相同格式的请求体，resource为加密后的plaintext
+     */
+    public static String notificationBody(String plaintext) throws GeneralSecurityException {
+        return "{\"id\":\"EV-2018022511223320873\",\"create_time\":\"2022-04-15T13:29:35+08:00\","
+                + "\"resource_type\":\"encrypt-resource\",\"event_type\":\"TRANSACTION.SUCCESS\","
+                + "\"summary\":\"支付成功\",\"resource\":{\"algorithm\":\"AEAD_AES_256_GCM\","
+                + "\"ciphertext\":\"" + encrypt("transaction", plaintext) + "\",\"associated_data\":\"transaction\","
+                + "\"original_type\":\"transaction\",\"nonce\":\"" + NONCE + "\"}}";
+    }
+}
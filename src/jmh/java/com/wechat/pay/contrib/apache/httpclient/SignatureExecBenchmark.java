@@ -0,0 +1,242 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import static com.wechat.pay.contrib.apache.httpclient.constant.WechatPayHttpHeaders.REQUEST_ID;
+import static com.wechat.pay.contrib.apache.httpclient.constant.WechatPayHttpHeaders.WECHAT_PAY_NONCE;
+import static com.wechat.pay.contrib.apache.httpclient.constant.WechatPayHttpHeaders.WECHAT_PAY_SERIAL;
+import static com.wechat.pay.contrib.apache.httpclient.constant.WechatPayHttpHeaders.WECHAT_PAY_SIGNATURE;
+import static com.wechat.pay.contrib.apache.httpclient.constant.WechatPayHttpHeaders.WECHAT_PAY_TIMESTAMP;
+
+import com.wechat.pay.contrib.apache.httpclient.auth.CertificatesVerifier;
+import com.wechat.pay.contrib.apache.httpclient.auth.PooledPrivateKeySigner;
+import com.wechat.pay.contrib.apache.httpclient.auth.PrivateKeySigner;
+import com.wechat.pay.contrib.apache.httpclient.auth.Signer;
+import com.wechat.pay.contrib.apache.httpclient.auth.WechatPay2Credentials;
+import com.wechat.pay.contrib.apache.httpclient.auth.WechatPay2Validator;
+import com.wechat.pay.contrib.apache.httpclient.util.ManualEpochClock;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.Header;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * SignatureExec整条处理链路的可伸缩性：请求体缓存、生成Authorization、添加请求头、应答体缓存和验签
+ *
+ * <p>下游的ClientExecChain以桩代替，读取请求体后返回预先签名的应答，不经过网络。
+ * 以{@link #main(String[])}运行时依次使用1到256个线程，汇总各线程数下的吞吐、p99延迟和每个请求分配的字节数，
+ * 便于发现共享SecureRandom、Map争用、遍历证书等只在高并发下才出现的退化。
+ * 也可以通过./gradlew jmh -PjmhArgs="SignatureExecBenchmark -t 64 -prof gc"运行单个线程数。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignatureExecBenchmark {
+
+    private static final int[] DEFAULT_THREADS = {1, 4, 16, 64, 256};
+    private static final long TIMESTAMP = 1650000000L;
+    private static final HttpHost TARGET = new HttpHost("api.mch.weixin.qq.com", 443, "https");
+    private static final HttpRoute ROUTE = new HttpRoute(TARGET);
+
+    /**
+     * 请求体和应答体的字节数
+     */
+    @Param({"256", "16384"})
+    public int bodySize;
+
+    /**
+     * 签名器，plain为{@link PrivateKeySigner}，pooled为{@link PooledPrivateKeySigner}
+     */
+    @Param({"plain", "pooled"})
+    public String signer;
+
+    /**
+     * 验签器持有的平台证书数量
+     */
+    @Param({"1", "4"})
+    public int certificateCount;
+
+    /**
+     * 请求实体，repeatable为{@link ByteArrayEntity}，streaming为只能读取一次的{@link InputStreamEntity}，
+     * 后者需要先缓存请求体才能签名
+     */
+    @Param({"repeatable", "streaming"})
+    public String requestEntity;
+
+    private SignatureExec exec;
+    private byte[] requestBody;
+
+    @Setup
+    public void setup() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        PrivateKey privateKey = generator.generateKeyPair().getPrivate();
+        Signer merchantSigner = "pooled".equals(signer)
+                ? new PooledPrivateKeySigner("MERCHANT_SERIAL", privateKey)
+                : new PrivateKeySigner("MERCHANT_SERIAL", privateKey);
+
+        List<X509Certificate> certificates = new ArrayList<>();
+        SelfSignedCertificate platform = null;
+        for (int i = 0; i < certificateCount; i++) {
+            platform = BenchmarkFixtures.newCertificate(0x4000 + i);
+            certificates.add(platform.getCertificate());
+        }
+        // 以最后一张证书签名，证书多于一张时验签需要按序列号查找
+        byte[] responseBody = BenchmarkFixtures.jsonBody(bodySize).getBytes(StandardCharsets.UTF_8);
+        String message = TIMESTAMP + "\n" + BenchmarkFixtures.NONCE + "\n"
+                + new String(responseBody, StandardCharsets.UTF_8) + "\n";
+        Header[] responseHeaders = {
+                new BasicHeader("Content-Type", ContentType.APPLICATION_JSON.toString()),
+                new BasicHeader(REQUEST_ID, "08F78BB5AF0610D302A0E8DA9B3E0A"),
+                new BasicHeader(WECHAT_PAY_SERIAL, platform.getSerialNumber()),
+                new BasicHeader(WECHAT_PAY_SIGNATURE, platform.sign(message.getBytes(StandardCharsets.UTF_8))),
+                new BasicHeader(WECHAT_PAY_NONCE, BenchmarkFixtures.NONCE),
+                new BasicHeader(WECHAT_PAY_TIMESTAMP, String.valueOf(TIMESTAMP))
+        };
+
+        exec = new SignatureExec(new WechatPay2Credentials("1900009191", merchantSigner),
+                new WechatPay2Validator(new CertificatesVerifier(certificates), new ManualEpochClock(TIMESTAMP)),
+                (route, request, context, execAware) -> {
+                    ((HttpEntityEnclosingRequest) request).getEntity().writeTo(DiscardingOutputStream.INSTANCE);
+                    return new StubResponse(responseHeaders, responseBody);
+                });
+        requestBody = BenchmarkFixtures.jsonBody(bodySize).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public CloseableHttpResponse execute() throws IOException, HttpException {
+        HttpPost post = new HttpPost("https://api.mch.weixin.qq.com/v3/pay/transactions/jsapi");
+        post.setEntity("streaming".equals(requestEntity)
+                ? new InputStreamEntity(new ByteArrayInputStream(requestBody), requestBody.length,
+                ContentType.APPLICATION_JSON)
+                : new ByteArrayEntity(requestBody, ContentType.APPLICATION_JSON));
+        CloseableHttpResponse response = exec.execute(ROUTE, HttpRequestWrapper.wrap(post, TARGET),
+                HttpClientContext.create(), null);
+        EntityUtils.consume(response.getEntity());
+        return response;
+    }
+
+    /**
+     * 依次以各线程数运行，参数为线程数列表，缺省时为1、4、16、64、256
+     */
+    public static void main(String[] args) throws RunnerException {
+        int[] threads = DEFAULT_THREADS;
+        if (args.length > 0) {
+            threads = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                threads[i] = Integer.parseInt(args[i]);
+            }
+        }
+        List<String> rows = new ArrayList<>();
+        for (int count : threads) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(SignatureExecBenchmark.class.getName() + ".execute")
+                    .threads(count)
+                    .addProfiler(GCProfiler.class);
+            Collection<RunResult> results = new Runner(options.build()).run();
+            for (RunResult result : results) {
+                rows.add(summarize(count, result));
+            }
+        }
+        System.out.println();
+        System.out.println(String.format("%-8s %-9s %-8s %-6s %-11s %-8s %14s %14s",
+                "threads", "bodySize", "signer", "certs", "entity", "mode", "score", "alloc(B/op)"));
+        rows.forEach(System.out::println);
+    }
+
+    /**
+     * 吞吐模式输出ops/ms，采样模式输出p99延迟(ms)
+     */
+    private static String summarize(int threads, RunResult result) {
+        Mode mode = result.getParams().getMode();
+        Result<?> primary = result.getPrimaryResult();
+        double score = mode == Mode.SampleTime
+                ? primary.getStatistics().getPercentile(99)
+                : primary.getScore();
+        double allocated = Double.NaN;
+        // getSecondaryResults()声明为原始类型Map<String, Result>，以通配符遍历避免rawtypes警告
+        for (Map.Entry<String, ?> entry : result.getSecondaryResults().entrySet()) {
+            if (entry.getKey().endsWith("gc.alloc.rate.norm")) {
+                allocated = ((Result<?>) entry.getValue()).getScore();
+            }
+        }
+        return String.format("%-8d %-9s %-8s %-6s %-11s %-8s %14.3f %14.1f", threads,
+                result.getParams().getParam("bodySize"), result.getParams().getParam("signer"),
+                result.getParams().getParam("certificateCount"), result.getParams().getParam("requestEntity"),
+                mode == Mode.SampleTime ? "p99" : "thrpt", score, allocated);
+    }
+
+    private static final class DiscardingOutputStream extends OutputStream {
+
+        static final DiscardingOutputStream INSTANCE = new DiscardingOutputStream();
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+
+    /**
+     * 每次返回新的只能读取一次的应答体，与真实连接上的应答一样需要缓存后才能验签
+     */
+    private static final class StubResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+        StubResponse(Header[] headers, byte[] body) {
+            super(HttpVersion.HTTP_1_1, 200, "OK");
+            setHeaders(headers);
+            setEntity(new InputStreamEntity(new ByteArrayInputStream(body), body.length,
+                    ContentType.APPLICATION_JSON));
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
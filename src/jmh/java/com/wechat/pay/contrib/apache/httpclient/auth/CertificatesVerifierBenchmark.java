@@ -0,0 +1,57 @@
+package com.wechat.pay.contrib.apache.httpclient.auth;
+
+import com.wechat.pay.contrib.apache.httpclient.BenchmarkFixtures;
+import com.wechat.pay.contrib.apache.httpclient.SelfSignedCertificate;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CertificatesVerifier验签的吞吐和延迟，线程数通过-t指定
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CertificatesVerifierBenchmark {
+
+    /**
+     * 应答体字节数
+     */
+    @Param({"256", "4096", "102400"})
+    public int bodySize;
+
+    private Verifier verifier;
+    private String serialNumber;
+    private byte[] message;
+    private String signature;
+
+    @Setup
+    public void setup() throws GeneralSecurityException {
+        SelfSignedCertificate certificate = BenchmarkFixtures.newCertificate(0x1001);
+        verifier = new CertificatesVerifier(Collections.singletonList(certificate.getCertificate()));
+        serialNumber = certificate.getSerialNumber();
+        message = ("1554208460\n" + BenchmarkFixtures.NONCE + "\n" + BenchmarkFixtures.jsonBody(bodySize) + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+        signature = certificate.sign(message);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return verifier.verify(serialNumber, message, signature);
+    }
+}
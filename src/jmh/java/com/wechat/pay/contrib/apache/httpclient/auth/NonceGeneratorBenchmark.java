@@ -0,0 +1,75 @@
+package com.wechat.pay.contrib.apache.httpclient.auth;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 共享SecureRandom逐字符取数的原有实现与StripedNonceGenerator在1、8、64个线程下的吞吐对比
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NonceGeneratorBenchmark {
+
+    private static final String SYMBOLS = WechatPay2Credentials.SYMBOLS;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final NonceGenerator striped = StripedNonceGenerator.getDefault();
+
+    private static String legacyNonce() {
+        char[] nonceChars = new char[32];
+        for (int index = 0; index < nonceChars.length; ++index) {
+            nonceChars[index] = SYMBOLS.charAt(RANDOM.nextInt(SYMBOLS.length()));
+        }
+        return new String(nonceChars);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String legacy1() {
+        return legacyNonce();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String legacy8() {
+        return legacyNonce();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public String legacy64() {
+        return legacyNonce();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String striped1() {
+        return striped.generateNonce();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String striped8() {
+        return striped.generateNonce();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public String striped64() {
+        return striped.generateNonce();
+    }
+}
@@ -0,0 +1,64 @@
+package com.wechat.pay.contrib.apache.httpclient.auth;
+
+import com.wechat.pay.contrib.apache.httpclient.BenchmarkFixtures;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PrivateKeySigner与PooledPrivateKeySigner的签名吞吐对比，线程数可通过-t覆盖
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class PrivateKeySignerBenchmark {
+
+    /**
+     * 请求体字节数
+     */
+    @Param({"32", "4096"})
+    public int bodySize;
+
+    private byte[] message;
+    private Signer privateKeySigner;
+    private Signer pooledSigner;
+
+    @Setup
+    public void setup() throws NoSuchAlgorithmException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        PrivateKey privateKey = generator.generateKeyPair().getPrivate();
+        privateKeySigner = new PrivateKeySigner("SERIAL", privateKey);
+        pooledSigner = new PooledPrivateKeySigner("SERIAL", privateKey);
+        message = ("POST\n/v3/pay/transactions/jsapi\n1554208460\n593BEC0C930BF1AFEB40B4A08C8FB242\n"
+                + BenchmarkFixtures.jsonBody(bodySize) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Signer.SignatureResult privateKeySigner() {
+        return privateKeySigner.sign(message);
+    }
+
+    @Benchmark
+    public Signer.SignatureResult pooledSigner() {
+        return pooledSigner.sign(message);
+    }
+}
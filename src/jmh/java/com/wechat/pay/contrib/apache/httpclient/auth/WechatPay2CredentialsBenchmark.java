@@ -0,0 +1,98 @@
+package com.wechat.pay.contrib.apache.httpclient.auth;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 构造签名串并生成Authorization的开销，对比拼接字符串的原有路径与写入可复用缓冲区的路径
+ *
+ * <p>签名器只计算SHA-256摘要，不执行RSA运算，以突出签名串构造本身的开销。建议加上-prof gc查看每次调用的内存分配。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WechatPay2CredentialsBenchmark {
+
+    /**
+     * 请求体字节数，分别对应普通的JSON请求和100KB的大请求
+     */
+    @Param({"256", "102400"})
+    public int bodySize;
+
+    private WechatPay2Credentials credentials;
+    private WechatPay2Credentials legacyCredentials;
+    private HttpRequestWrapper request;
+
+    @Setup
+    public void setup() throws IOException {
+        Signer signer = new DigestSigner();
+        credentials = new WechatPay2Credentials("1900009191", signer);
+        legacyCredentials = new WechatPay2Credentials("1900009191", signer) {
+            @Override
+            protected String buildMessage(String nonce, long timestamp, HttpRequestWrapper request)
+                    throws IOException {
+                return super.buildMessage(nonce, timestamp, request);
+            }
+        };
+
+        char[] body = new char[bodySize];
+        Arrays.fill(body, 'a');
+        body[0] = '"';
+        body[body.length - 1] = '"';
+        HttpPost post = new HttpPost("https://api.mch.weixin.qq.com/v3/pay/transactions/jsapi");
+        post.setEntity(new BufferedHttpEntity(new StringEntity(new String(body), ContentType.APPLICATION_JSON)));
+        request = HttpRequestWrapper.wrap(post);
+    }
+
+    @Benchmark
+    public String legacyToken() throws IOException {
+        return legacyCredentials.getToken(request);
+    }
+
+    @Benchmark
+    public String token() throws IOException {
+        return credentials.getToken(request);
+    }
+
+    private static class DigestSigner implements Signer {
+
+        @Override
+        public SignatureResult sign(byte[] message) {
+            return sign(message, 0, message.length);
+        }
+
+        @Override
+        public SignatureResult sign(byte[] message, int offset, int length) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(message, offset, length);
+                return new SignatureResult(Base64.getEncoder().encodeToString(digest.digest()), "SERIAL");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
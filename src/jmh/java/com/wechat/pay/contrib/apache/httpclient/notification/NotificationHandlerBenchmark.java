@@ -0,0 +1,68 @@
+package com.wechat.pay.contrib.apache.httpclient.notification;
+
+import com.wechat.pay.contrib.apache.httpclient.BenchmarkFixtures;
+import com.wechat.pay.contrib.apache.httpclient.SelfSignedCertificate;
+import com.wechat.pay.contrib.apache.httpclient.auth.CertificatesVerifier;
+import com.wechat.pay.contrib.apache.httpclient.exception.ParseException;
+import com.wechat.pay.contrib.apache.httpclient.exception.ValidationException;
+import com.wechat.pay.contrib.apache.httpclient.util.ManualEpochClock;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * NotificationHandler验签、解析和解密回调通知的完整开销，线程数通过-t指定
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NotificationHandlerBenchmark {
+
+    private static final long TIMESTAMP = 1650000000L;
+
+    /**
+     * 解密后的资源字节数
+     */
+    @Param({"256", "4096"})
+    public int bodySize;
+
+    private NotificationHandler handler;
+    private NotificationRequest request;
+
+    @Setup
+    public void setup() throws GeneralSecurityException {
+        SelfSignedCertificate certificate = BenchmarkFixtures.newCertificate(0x3001);
+        handler = new NotificationHandler(
+                new CertificatesVerifier(Collections.singletonList(certificate.getCertificate())),
+                BenchmarkFixtures.API_V3_KEY, new ManualEpochClock(TIMESTAMP));
+        String body = BenchmarkFixtures.notificationBody(BenchmarkFixtures.jsonBody(bodySize));
+        String message = TIMESTAMP + "\n" + BenchmarkFixtures.NONCE + "\n" + body + "\n";
+        request = new NotificationRequest.Builder()
+                .withSerialNumber(certificate.getSerialNumber())
+                .withNonce(BenchmarkFixtures.NONCE)
+                .withTimestamp(String.valueOf(TIMESTAMP))
+                .withSignature(certificate.sign(message.getBytes(StandardCharsets.UTF_8)))
+                .withBody(body)
+                .build();
+    }
+
+    @Benchmark
+    public Notification parse() throws ValidationException, ParseException {
+        return handler.parse(request);
+    }
+}
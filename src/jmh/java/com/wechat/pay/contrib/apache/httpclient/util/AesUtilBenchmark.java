@@ -0,0 +1,72 @@
+package com.wechat.pay.contrib.apache.httpclient.util;
+
+import com.wechat.pay.contrib.apache.httpclient.BenchmarkFixtures;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * AesUtil解密回调通知和平台证书密文的开销，对比解密为String与解密到复用缓冲区，线程数通过-t指定
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AesUtilBenchmark {
+
+    /**
+     * 明文字节数
+     */
+    @Param({"256", "4096", "102400"})
+    public int bodySize;
+
+    private AesUtil aesUtil;
+    private byte[] associatedData;
+    private byte[] nonce;
+    private String ciphertext;
+    private ByteBuffer rawCiphertext;
+
+    @Setup
+    public void setup() throws GeneralSecurityException {
+        aesUtil = new AesUtil(BenchmarkFixtures.API_V3_KEY);
+        associatedData = "transaction".getBytes(StandardCharsets.UTF_8);
+        nonce = BenchmarkFixtures.NONCE.getBytes(StandardCharsets.UTF_8);
+        ciphertext = BenchmarkFixtures.encrypt("transaction", BenchmarkFixtures.jsonBody(bodySize));
+        rawCiphertext = ByteBuffer.wrap(Base64.getDecoder().decode(ciphertext));
+    }
+
+    @Benchmark
+    public String decryptToString() throws GeneralSecurityException {
+        return aesUtil.decryptToString(associatedData, nonce, ciphertext);
+    }
+
+    /**
+     * 解密到每个线程复用的缓冲区
+     */
+    @Benchmark
+    public int decryptToBuffer(PlaintextBuffer buffer) throws GeneralSecurityException {
+        buffer.plaintext.clear();
+        return aesUtil.decrypt(associatedData, nonce, rawCiphertext.duplicate(), buffer.plaintext);
+    }
+
+    @State(Scope.Thread)
+    public static class PlaintextBuffer {
+
+        private final ByteBuffer plaintext = ByteBuffer.allocate(128 * 1024);
+    }
+}
@@ -0,0 +1,55 @@
+package com.wechat.pay.contrib.apache.httpclient.util;
+
+import com.wechat.pay.contrib.apache.httpclient.BenchmarkFixtures;
+import com.wechat.pay.contrib.apache.httpclient.SelfSignedCertificate;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CertSerializeUtil解析下载平台证书应答的开销，线程数通过-t指定
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CertSerializeUtilBenchmark {
+
+    /**
+     * 应答中的证书数量，平台证书轮换期间通常为2个
+     */
+    @Param({"1", "3"})
+    public int certificateCount;
+
+    private String body;
+
+    @Setup
+    public void setup() throws GeneralSecurityException {
+        SelfSignedCertificate[] certificates = new SelfSignedCertificate[certificateCount];
+        for (int i = 0; i < certificateCount; i++) {
+            certificates[i] = BenchmarkFixtures.newCertificate(0x2000 + i);
+        }
+        body = BenchmarkFixtures.certificatesBody(certificates);
+    }
+
+    @Benchmark
+    public Map<BigInteger, X509Certificate> deserializeToCerts() throws GeneralSecurityException, IOException {
+        return CertSerializeUtil.deserializeToCerts(BenchmarkFixtures.API_V3_KEY, body);
+    }
+}
@@ -0,0 +1,53 @@
+package com.wechat.pay.contrib.apache.httpclient.util;
+
+import com.wechat.pay.contrib.apache.httpclient.BenchmarkFixtures;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.IllegalBlockSizeException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * RsaCryptoUtil以OAEP加密敏感信息的开销，线程数通过-t指定
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RsaCryptoUtilBenchmark {
+
+    /**
+     * 明文字节数，2048位密钥的OAEP最多加密214个字节
+     */
+    @Param({"16", "128"})
+    public int messageLength;
+
+    private X509Certificate certificate;
+    private String message;
+
+    @Setup
+    public void setup() throws GeneralSecurityException {
+        certificate = BenchmarkFixtures.newCertificate(0x1002).getCertificate();
+        char[] chars = new char[messageLength];
+        Arrays.fill(chars, '8');
+        message = new String(chars);
+    }
+
+    @Benchmark
+    public String encryptOAEP() throws IllegalBlockSizeException {
+        return RsaCryptoUtil.encryptOAEP(message, certificate);
+    }
+}
@@ -0,0 +1,124 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+
+/**
+ * 以文件为数据源的multipart文件部分，发送时由FileChannel直接写出，不把文件读入堆内存
+ *
+ * <p>长度已知，因此所在的multipart实体可以重复读取并带上Content-Length。
+ * 以Path构造时每次写出都重新打开文件；以FileChannel构造时从构造时的position读到文件末尾，channel由调用方关闭。
+ */
+class FileChannelBody extends AbstractContentBody {
+
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+
+    private final String fileName;
+    private final Path path;
+    private final FileChannel channel;
+    private final long position;
+    private final long length;
+
+    FileChannelBody(Path path, ContentType contentType, String fileName) throws IOException {
+        super(contentType);
+        this.fileName = fileName;
+        this.path = path;
+        this.channel = null;
+        this.position = 0;
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.length = file.size();
+        }
+    }
+
+    FileChannelBody(FileChannel channel, ContentType contentType, String fileName) throws IOException {
+        super(contentType);
+        this.fileName = fileName;
+        this.path = null;
+        this.channel = channel;
+        this.position = channel.position();
+        this.length = channel.size() - position;
+    }
+
+    /**
+     * 以内存映射的方式计算文件内容的SHA-256摘要
+     *
+     * @return 小写十六进制的摘要
+     */
+    String sha256Hex() throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("当前Java环境不支持SHA-256", e);
+        }
+        if (channel != null) {
+            update(digest, channel);
+        } else {
+            try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+                update(digest, file);
+            }
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private void update(MessageDigest digest, FileChannel file) throws IOException {
+        long end = position + length;
+        for (long offset = position; offset < end; offset += MAP_WINDOW) {
+            MappedByteBuffer buffer = file.map(MapMode.READ_ONLY, offset, Math.min(MAP_WINDOW, end - offset));
+            digest.update(buffer);
+        }
+    }
+
+    @Override
+    public String getFilename() {
+        return fileName;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        if (channel != null) {
+            transfer(channel, target);
+        } else {
+            try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+                transfer(file, target);
+            }
+        }
+    }
+
+    private void transfer(FileChannel file, WritableByteChannel target) throws IOException {
+        long end = position + length;
+        for (long offset = position; offset < end; ) {
+            long transferred = file.transferTo(offset, end - offset, target);
+            if (transferred <= 0) {
+                throw new IOException("文件在上传过程中被截断");
+            }
+            offset += transferred;
+        }
+    }
+
+    @Override
+    public String getTransferEncoding() {
+        return "binary";
+    }
+
+    @Override
+    public long getContentLength() {
+        return length;
+    }
+}
@@ -0,0 +1,415 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import static com.wechat.pay.contrib.apache.httpclient.constant.WechatPayHttpHeaders.WECHAT_PAY_SERIAL;
+import static org.apache.http.HttpHeaders.AUTHORIZATION;
+import static org.apache.http.HttpStatus.SC_MULTIPLE_CHOICES;
+import static org.apache.http.HttpStatus.SC_OK;
+
+import com.wechat.pay.contrib.apache.httpclient.metrics.MetricsListener;
+import com.wechat.pay.contrib.apache.httpclient.metrics.MetricsListener.BodyType;
+import com.wechat.pay.contrib.apache.httpclient.metrics.UriTemplates;
+import com.wechat.pay.contrib.apache.httpclient.metrics.ValidationFailure;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 对微信支付请求签名、对应答验签的异步客户端，功能与{@link SignatureExec}相同
+ *
+ * <p>提交请求时在调用线程上计算签名，请求以签名后的副本发送，不修改调用方的请求对象。
+ * 应答接收完成后在验签线程池中验签，不占用I/O线程，验签失败时返回的Future以{@link HttpException}失败。
+ * 以HttpAsyncRequestProducer提交的请求，请求体须包含在generateRequest()返回的请求中；
+ * HttpAsyncResponseConsumer在应答完整接收并验签后才收到应答。
+ */
+class SignatureAsyncClient extends CloseableHttpAsyncClient {
+
+    private static final String WECHAT_PAY_HOST_NAME_SUFFIX = ".mch.weixin.qq.com";
+    private static final String VALIDATION_WORKER_THREAD_NAME = "wechatpay_async_validation_worker_";
+    private static final Logger log = LoggerFactory.getLogger(SignatureAsyncClient.class);
+    private final CloseableHttpAsyncClient client;
+    private final Credentials credentials;
+    private final Validator validator;
+    private final MetricsListener metrics;
+    private final Executor validationExecutor;
+    private final ExecutorService ownedExecutor;
+
+    /**
+     * @param validationExecutor 执行验签的线程池，为null时创建内部线程池，随客户端关闭
+     */
+    SignatureAsyncClient(CloseableHttpAsyncClient client, Credentials credentials, Validator validator,
+            MetricsListener metrics, Executor validationExecutor) {
+        this.client = client;
+        this.credentials = credentials;
+        this.validator = validator;
+        this.metrics = metrics;
+        if (validationExecutor == null) {
+            this.ownedExecutor = newWorkerPool(Runtime.getRuntime().availableProcessors());
+            this.validationExecutor = ownedExecutor;
+        } else {
+            this.ownedExecutor = null;
+            this.validationExecutor = validationExecutor;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return client.isRunning();
+    }
+
+    @Override
+    public void start() {
+        client.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            client.close();
+        } finally {
+            if (ownedExecutor != null) {
+                ownedExecutor.shutdown();
+            }
+        }
+    }
+
+    @Override
+    public <T> Future<T> execute(HttpAsyncRequestProducer requestProducer,
+            HttpAsyncResponseConsumer<T> responseConsumer, HttpContext context, FutureCallback<T> callback) {
+        if (!isWechatPayHost(requestProducer.getTarget())) {
+            return client.execute(requestProducer, responseConsumer, context, callback);
+        }
+        SignedFuture<T> future = new SignedFuture<>(callback);
+        HttpRequest request;
+        try {
+            request = requestProducer.generateRequest();
+        } catch (IOException | HttpException | RuntimeException e) {
+            closeQuietly(requestProducer);
+            responseConsumer.failed(e);
+            closeQuietly(responseConsumer);
+            future.failed(e);
+            return future;
+        }
+        HttpContext localContext = context != null ? context : HttpClientContext.create();
+        // 以签名后的请求发送，应答验签后再交给调用方的consumer。
+        // 签名后的请求与producer共用同一个请求体，请求结束后才能关闭producer
+        future.delegate = execute(requestProducer.getTarget(), request, localContext,
+                new FutureCallback<HttpResponse>() {
+                    @Override
+                    public void completed(HttpResponse response) {
+                        closeQuietly(requestProducer);
+                        try {
+                            future.completed(replay(response, responseConsumer, localContext));
+                        } catch (Exception e) {
+                            future.failed(e);
+                        }
+                    }
+
+                    @Override
+                    public void failed(Exception ex) {
+                        closeQuietly(requestProducer);
+                        responseConsumer.failed(ex);
+                        closeQuietly(responseConsumer);
+                        future.failed(ex);
+                    }
+
+                    @Override
+                    public void cancelled() {
+                        closeQuietly(requestProducer);
+                        responseConsumer.cancel();
+                        closeQuietly(responseConsumer);
+                        future.cancel();
+                    }
+                });
+        return future;
+    }
+
+    @Override
+    public Future<HttpResponse> execute(HttpHost target, HttpRequest request, HttpContext context,
+            FutureCallback<HttpResponse> callback) {
+        if (!isWechatPayHost(target)) {
+            return client.execute(target, request, context, callback);
+        }
+        SignedFuture<HttpResponse> future = new SignedFuture<>(callback);
+        HttpRequestWrapper signed = HttpRequestWrapper.wrap(request, target);
+        String method = signed.getMethod();
+        // 不监控时不计算路径模板
+        String uriTemplate = metrics == MetricsListener.NOOP ? null : UriTemplates.normalize(
+                signed.getURI().getRawPath());
+        try {
+            sign(signed, method, uriTemplate);
+        } catch (IOException e) {
+            future.failed(e);
+            return future;
+        }
+        long start = System.nanoTime();
+        future.delegate = client.execute(target, signed, context, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                metrics.onExecute(method, uriTemplate, response.getStatusLine().getStatusCode(),
+                        System.nanoTime() - start);
+                try {
+                    validationExecutor.execute(() -> {
+                        try {
+                            validate(signed, response, method, uriTemplate);
+                            future.completed(response);
+                        } catch (IOException | HttpException | RuntimeException e) {
+                            future.failed(e);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    future.failed(e);
+                }
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                metrics.onExecute(method, uriTemplate, -1, System.nanoTime() - start);
+                future.failed(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                future.cancel();
+            }
+        });
+        return future;
+    }
+
+    private boolean isWechatPayHost(HttpHost target) {
+        return target != null && target.getHostName().endsWith(WECHAT_PAY_HOST_NAME_SUFFIX);
+    }
+
+    private boolean isUploadHttpPost(HttpRequestWrapper request) {
+        return request.getOriginal() instanceof WechatPayUploadHttpPost;
+    }
+
+    private boolean isDownloadHttpGet(HttpRequestWrapper request) {
+        return request.getOriginal() instanceof WechatPayDownloadHttpGet;
+    }
+
+    private void sign(HttpRequestWrapper request, String method, String uriTemplate) throws IOException {
+        // 上传类不需要消耗两次故不做转换
+        if (request instanceof HttpEntityEnclosingRequest && !isUploadHttpPost(request)) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity != null && !entity.isRepeatable()) {
+                HttpEntity captured = SignatureExec.capture(entity);
+                ((HttpEntityEnclosingRequest) request).setEntity(captured);
+                metrics.onBodyBuffered(method, uriTemplate, BodyType.REQUEST, captured.getContentLength());
+            }
+        }
+        long start = System.nanoTime();
+        request.addHeader(AUTHORIZATION, credentials.getSchema() + " " + credentials.getToken(request));
+        metrics.onSign(method, uriTemplate, System.nanoTime() - start);
+        request.addHeader(WECHAT_PAY_SERIAL, validator.getSerialNumber());
+    }
+
+    private void validate(HttpRequestWrapper request, HttpResponse response, String method, String uriTemplate)
+            throws IOException, HttpException {
+        StatusLine statusLine = response.getStatusLine();
+        if (statusLine.getStatusCode() >= SC_OK && statusLine.getStatusCode() < SC_MULTIPLE_CHOICES) {
+            // 账单文件下载的应答不签名
+            if (isDownloadHttpGet(request)) {
+                return;
+            }
+            HttpEntity entity = response.getEntity();
+            if (entity != null && !entity.isRepeatable()) {
+                HttpEntity captured = SignatureExec.capture(entity);
+                response.setEntity(captured);
+                metrics.onBodyBuffered(method, uriTemplate, BodyType.RESPONSE, captured.getContentLength());
+            }
+            long start = System.nanoTime();
+            ValidationFailure failure = validator.diagnose(new ResponseView(response));
+            metrics.onValidate(method, uriTemplate, failure, System.nanoTime() - start);
+            if (failure != null) {
+                throw new HttpException("应答的微信支付签名验证失败");
+            }
+        } else {
+            log.error("应答的状态码不为200-299。status code[{}]\trequest headers[{}]", statusLine.getStatusCode(),
+                    Arrays.toString(request.getAllHeaders()));
+        }
+    }
+
+    /**
+     * 把已验签的应答交给调用方的consumer，应答体以一次性读完的方式传入
+     */
+    private static <T> T replay(HttpResponse response, HttpAsyncResponseConsumer<T> consumer, HttpContext context)
+            throws Exception {
+        try {
+            ByteBuffer body = null;
+            HttpEntity entity = response.getEntity();
+            if (entity != null) {
+                byte[] bytes = EntityUtils.toByteArray(entity);
+                ByteArrayEntity buffered = new ByteArrayEntity(bytes);
+                buffered.setContentType(entity.getContentType());
+                buffered.setContentEncoding(entity.getContentEncoding());
+                response.setEntity(buffered);
+                body = ByteBuffer.wrap(bytes);
+            }
+            consumer.responseReceived(response);
+            if (body != null) {
+                BufferDecoder decoder = new BufferDecoder(body);
+                while (!decoder.isCompleted()) {
+                    int remaining = body.remaining();
+                    consumer.consumeContent(decoder, NoopIOControl.INSTANCE);
+                    if (body.remaining() == remaining) {
+                        throw new IOException("HttpAsyncResponseConsumer未读取应答体");
+                    }
+                }
+            }
+            consumer.responseCompleted(context);
+            if (consumer.getException() != null) {
+                throw consumer.getException();
+            }
+            return consumer.getResult();
+        } finally {
+            closeQuietly(consumer);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.debug("关闭HttpAsyncRequestProducer或HttpAsyncResponseConsumer失败", e);
+        }
+    }
+
+    private static ThreadPoolExecutor newWorkerPool(int size) {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, VALIDATION_WORKER_THREAD_NAME + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        workers.allowCoreThreadTimeOut(true);
+        return workers;
+    }
+
+    /**
+     * 返回给调用方的Future，取消时同时取消实际发送的请求
+     */
+    private static class SignedFuture<T> extends BasicFuture<T> {
+
+        private volatile Future<?> delegate;
+
+        SignedFuture(FutureCallback<T> callback) {
+            super(callback);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            Future<?> current = delegate;
+            if (current != null) {
+                current.cancel(mayInterruptIfRunning);
+            }
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
+
+    /**
+     * 从内存中的应答体读取，一次可以读完
+     */
+    private static class BufferDecoder implements ContentDecoder {
+
+        private final ByteBuffer body;
+
+        BufferDecoder(ByteBuffer body) {
+            this.body = body;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!body.hasRemaining()) {
+                return -1;
+            }
+            int length = Math.min(body.remaining(), dst.remaining());
+            ByteBuffer slice = body.duplicate();
+            slice.limit(slice.position() + length);
+            dst.put(slice);
+            body.position(body.position() + length);
+            return length;
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return !body.hasRemaining();
+        }
+    }
+
+    /**
+     * 应答体已在内存中，consumer暂停或恢复读取不需要处理
+     */
+    private static class NoopIOControl implements IOControl {
+
+        static final NoopIOControl INSTANCE = new NoopIOControl();
+
+        @Override
+        public void requestInput() {
+        }
+
+        @Override
+        public void suspendInput() {
+        }
+
+        @Override
+        public void requestOutput() {
+        }
+
+        @Override
+        public void suspendOutput() {
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+    /**
+     * Validator以CloseableHttpResponse为参数，异步应答以只读视图的方式传入
+     */
+    private static class ResponseView extends BasicHttpResponse implements CloseableHttpResponse {
+
+        ResponseView(HttpResponse response) {
+            super(response.getStatusLine());
+            setHeaders(response.getAllHeaders());
+            setEntity(response.getEntity());
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -1,12 +1,22 @@
 package com.wechat.pay.contrib.apache.httpclient;
 
+import static com.wechat.pay.contrib.apache.httpclient.constant.WechatPayHttpHeaders.REQUEST_ID;
 import static com.wechat.pay.contrib.apache.httpclient.constant.WechatPayHttpHeaders.WECHAT_PAY_SERIAL;
 import static org.apache.http.HttpHeaders.AUTHORIZATION;
 import static org.apache.http.HttpStatus.SC_MULTIPLE_CHOICES;
 import static org.apache.http.HttpStatus.SC_OK;
 
+import com.wechat.pay.contrib.apache.httpclient.auth.WechatPay2Credentials;
+import com.wechat.pay.contrib.apache.httpclient.jfr.RequestEvent;
+import com.wechat.pay.contrib.apache.httpclient.jfr.WechatPayEvents;
+import com.wechat.pay.contrib.apache.httpclient.metrics.MetricsListener;
+import com.wechat.pay.contrib.apache.httpclient.metrics.MetricsListener.BodyType;
+import com.wechat.pay.contrib.apache.httpclient.metrics.UriTemplates;
+import com.wechat.pay.contrib.apache.httpclient.metrics.ValidationFailure;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpException;
@@ -16,7 +26,7 @@ import org.apache.http.client.methods.HttpExecutionAware;
 import org.apache.http.client.methods.HttpRequestWrapper;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.conn.routing.HttpRoute;
-import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.impl.execchain.ClientExecChain;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
@@ -32,64 +42,183 @@ public class SignatureExec implements ClientExecChain {
     private final ClientExecChain mainExec;
     private final Credentials credentials;
     private final Validator validator;
+    private final MetricsListener metrics;
 
     protected SignatureExec(Credentials credentials, Validator validator, ClientExecChain mainExec) {
+        this(credentials, validator, mainExec, MetricsListener.NOOP);
+    }
+
+    /**
+     * @param metrics 接收签名、执行和验签各阶段耗时的监听器
+     */
+    protected SignatureExec(Credentials credentials, Validator validator, ClientExecChain mainExec,
+            MetricsListener metrics) {
+        if (metrics == null) {
+            throw new IllegalArgumentException("metrics为空");
+        }
         this.credentials = credentials;
         this.validator = validator;
         this.mainExec = mainExec;
+        this.metrics = metrics;
     }
 
+    /**
+     * 应答体读取到一块内存中，验签和调用方共用这份数据
+     */
     protected void convertToRepeatableResponseEntity(CloseableHttpResponse response) throws IOException {
         HttpEntity entity = response.getEntity();
-        if (entity != null) {
-            response.setEntity(new BufferedHttpEntity(entity));
+        if (entity != null && !entity.isRepeatable()) {
+            response.setEntity(capture(entity));
         }
     }
 
+    /**
+     * 请求体需要先用于计算签名再发送。可重复读取的请求体（如StringEntity）直接使用，不做复制；
+     * 只能读取一次的请求体读取到一块内存中，签名和发送共用这份数据
+     */
     protected void convertToRepeatableRequestEntity(HttpRequestWrapper request) throws IOException {
         if (isEntityEnclosing(request)) {
             HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
-            if (entity != null) {
-                ((HttpEntityEnclosingRequest) request).setEntity(new BufferedHttpEntity(entity));
+            if (entity != null && !entity.isRepeatable()) {
+                ((HttpEntityEnclosingRequest) request).setEntity(capture(entity));
             }
         }
     }
 
+    static HttpEntity capture(HttpEntity entity) throws IOException {
+        long length = entity.getContentLength();
+        CapturedContent content = new CapturedContent(length > 0 && length < Integer.MAX_VALUE ? (int) length : 4096);
+        entity.writeTo(content);
+        return content.toEntity(entity);
+    }
+
+    /**
+     * 直接以内部数组构造实体，避免toByteArray的再次复制
+     */
+    private static class CapturedContent extends ByteArrayOutputStream {
+
+        CapturedContent(int size) {
+            super(size);
+        }
+
+        HttpEntity toEntity(HttpEntity original) {
+            ByteArrayEntity entity = new ByteArrayEntity(buf, 0, count);
+            entity.setContentType(original.getContentType());
+            entity.setContentEncoding(original.getContentEncoding());
+            entity.setChunked(original.isChunked());
+            return entity;
+        }
+    }
+
     @Override
     public CloseableHttpResponse execute(HttpRoute route, HttpRequestWrapper request, HttpClientContext context,
             HttpExecutionAware execAware) throws IOException, HttpException {
         if (request.getTarget().getHostName().endsWith(WECHAT_PAY_HOST_NAME_SUFFIX)) {
-            return executeWithSignature(route, request, context, execAware);
+            RequestEvent event = WechatPayEvents.beginRequest();
+            if (event == null) {
+                return executeWithSignature(route, request, context, execAware);
+            }
+            CloseableHttpResponse response = null;
+            try {
+                response = executeWithSignature(route, request, context, execAware);
+                return response;
+            } finally {
+                commit(event, request, response);
+            }
         } else {
             return mainExec.execute(route, request, context, execAware);
         }
     }
 
+    /**
+     * 提交请求的JFR事件，未达到记录阈值时不计算路径模板等字段
+     */
+    private void commit(RequestEvent event, HttpRequestWrapper request, CloseableHttpResponse response) {
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        if (credentials instanceof WechatPay2Credentials) {
+            event.merchantId = ((WechatPay2Credentials) credentials).getMerchantId();
+        }
+        event.method = request.getMethod();
+        event.uriTemplate = UriTemplates.normalize(request.getURI().getRawPath());
+        HttpEntity requestEntity = getEntity(request);
+        event.requestBodySize = requestEntity == null ? 0 : requestEntity.getContentLength();
+        if (response != null) {
+            event.statusCode = response.getStatusLine().getStatusCode();
+            Header requestId = response.getFirstHeader(REQUEST_ID);
+            event.requestId = requestId == null ? null : requestId.getValue();
+            HttpEntity responseEntity = response.getEntity();
+            event.responseBodySize = responseEntity == null ? 0 : responseEntity.getContentLength();
+        }
+        event.commit();
+    }
+
     private boolean isEntityEnclosing(HttpRequestWrapper request) {
         return request instanceof HttpEntityEnclosingRequest;
     }
 
+    private HttpEntity getEntity(HttpRequestWrapper request) {
+        return isEntityEnclosing(request) ? ((HttpEntityEnclosingRequest) request).getEntity() : null;
+    }
+
     private boolean isUploadHttpPost(HttpRequestWrapper request) {
         return request.getOriginal() instanceof WechatPayUploadHttpPost;
     }
 
+    private boolean isDownloadHttpGet(HttpRequestWrapper request) {
+        return request.getOriginal() instanceof WechatPayDownloadHttpGet;
+    }
+
     private CloseableHttpResponse executeWithSignature(HttpRoute route, HttpRequestWrapper request,
             HttpClientContext context,
             HttpExecutionAware execAware) throws IOException, HttpException {
+        String method = request.getMethod();
+        // 不监控时不计算路径模板
+        String uriTemplate = metrics == MetricsListener.NOOP ? null : UriTemplates.normalize(
+                request.getURI().getRawPath());
         // 上传类不需要消耗两次故不做转换
         if (!isUploadHttpPost(request)) {
+            HttpEntity original = getEntity(request);
             convertToRepeatableRequestEntity(request);
+            HttpEntity entity = getEntity(request);
+            if (entity != original) {
+                metrics.onBodyBuffered(method, uriTemplate, BodyType.REQUEST, entity.getContentLength());
+            }
         }
         // 添加认证信息
+        long start = System.nanoTime();
         request.addHeader(AUTHORIZATION, credentials.getSchema() + " " + credentials.getToken(request));
+        metrics.onSign(method, uriTemplate, System.nanoTime() - start);
         request.addHeader(WECHAT_PAY_SERIAL, validator.getSerialNumber());
         // 执行
-        CloseableHttpResponse response = mainExec.execute(route, request, context, execAware);
-        // 对成功应答验签
+        start = System.nanoTime();
+        CloseableHttpResponse response;
+        try {
+            response = mainExec.execute(route, request, context, execAware);
+        } catch (IOException | HttpException | RuntimeException e) {
+            metrics.onExecute(method, uriTemplate, -1, System.nanoTime() - start);
+            throw e;
+        }
         StatusLine statusLine = response.getStatusLine();
+        metrics.onExecute(method, uriTemplate, statusLine.getStatusCode(), System.nanoTime() - start);
+        // 对成功应答验签
         if (statusLine.getStatusCode() >= SC_OK && statusLine.getStatusCode() < SC_MULTIPLE_CHOICES) {
+            // 账单文件下载的应答不签名，由调用方边读边校验摘要，不缓存应答体
+            if (isDownloadHttpGet(request)) {
+                return response;
+            }
+            HttpEntity original = response.getEntity();
             convertToRepeatableResponseEntity(response);
-            if (!validator.validate(response)) {
+            if (response.getEntity() != original) {
+                metrics.onBodyBuffered(method, uriTemplate, BodyType.RESPONSE,
+                        response.getEntity().getContentLength());
+            }
+            start = System.nanoTime();
+            ValidationFailure failure = validator.diagnose(response);
+            metrics.onValidate(method, uriTemplate, failure, System.nanoTime() - start);
+            if (failure != null) {
                 throw new HttpException("应答的微信支付签名验证失败");
             }
         } else {
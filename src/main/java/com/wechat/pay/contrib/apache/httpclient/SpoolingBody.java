@@ -0,0 +1,121 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.content.AbstractContentBody;
+
+/**
+ * 以输入流为数据源、可以重复写出的multipart文件部分
+ *
+ * <p>第一次写出时边读输入流边发送，读到的内容同时记录下来：不超过阈值的部分保存在内存中，超出的部分写入临时文件。
+ * 再次写出（如连接被重置后重试）时先重放已记录的内容，再继续读取输入流中尚未读过的部分，
+ * 因此发送中途失败也能完整重试，且大文件不会整体占用堆内存。临时文件在{@link #close()}时删除。
+ */
+class SpoolingBody extends AbstractContentBody implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final String fileName;
+    private final InputStream source;
+    private final int memoryThreshold;
+    private byte[] memory = new byte[0];
+    private int memoryCount;
+    private FileChannel spill;
+    private long spillCount;
+    private boolean exhausted;
+    private boolean closed;
+
+    /**
+     * @param memoryThreshold 内存中最多保存的字节数，超出的部分写入临时文件
+     */
+    SpoolingBody(InputStream source, ContentType contentType, String fileName, int memoryThreshold) {
+        super(contentType);
+        this.source = source;
+        this.fileName = fileName;
+        this.memoryThreshold = memoryThreshold;
+    }
+
+    @Override
+    public synchronized void writeTo(OutputStream out) throws IOException {
+        if (closed) {
+            throw new IOException("上传内容已释放，无法再次发送");
+        }
+        out.write(memory, 0, memoryCount);
+        if (spill != null) {
+            WritableByteChannel target = Channels.newChannel(out);
+            for (long offset = 0; offset < spillCount; ) {
+                long transferred = spill.transferTo(offset, spillCount - offset, target);
+                if (transferred <= 0) {
+                    throw new IOException("临时文件在上传过程中被截断");
+                }
+                offset += transferred;
+            }
+        }
+        if (!exhausted) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = source.read(buffer)) != -1) {
+                // 先记录再发送，发送失败时这部分内容也能在重试时重放
+                record(buffer, n);
+                out.write(buffer, 0, n);
+            }
+            exhausted = true;
+        }
+    }
+
+    private void record(byte[] buffer, int length) throws IOException {
+        if (spill == null && memoryCount + length <= memoryThreshold) {
+            if (memoryCount + length > memory.length) {
+                int capacity = Math.max(memoryCount + length, Math.max(BUFFER_SIZE, memory.length << 1));
+                memory = Arrays.copyOf(memory, Math.min(capacity, memoryThreshold));
+            }
+            System.arraycopy(buffer, 0, memory, memoryCount, length);
+            memoryCount += length;
+            return;
+        }
+        if (spill == null) {
+            spill = FileChannel.open(Files.createTempFile("wechatpay-upload-", ".tmp"), StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        }
+        ByteBuffer src = ByteBuffer.wrap(buffer, 0, length);
+        while (src.hasRemaining()) {
+            spillCount += spill.write(src, spillCount);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        memory = new byte[0];
+        memoryCount = 0;
+        if (spill != null) {
+            spill.close();
+            spill = null;
+        }
+    }
+
+    @Override
+    public String getFilename() {
+        return fileName;
+    }
+
+    @Override
+    public String getTransferEncoding() {
+        return "binary";
+    }
+
+    @Override
+    public synchronized long getContentLength() {
+        return exhausted ? memoryCount + spillCount : -1;
+    }
+}
@@ -1,5 +1,6 @@
 package com.wechat.pay.contrib.apache.httpclient;
 
+import com.wechat.pay.contrib.apache.httpclient.metrics.ValidationFailure;
 import java.io.IOException;
 import org.apache.http.client.methods.CloseableHttpResponse;
 
@@ -11,4 +12,15 @@ public interface Validator {
     boolean validate(CloseableHttpResponse response) throws IOException;
 
     String getSerialNumber();
+
+    /**
+     * 验签并给出失败的原因，供监控使用
+     *
+     * @param response 应答
+     * @return 验签通过时为null
+     * @throws IOException 读取应答体失败
+     */
+    default ValidationFailure diagnose(CloseableHttpResponse response) throws IOException {
+        return validate(response) ? null : ValidationFailure.UNKNOWN;
+    }
 }
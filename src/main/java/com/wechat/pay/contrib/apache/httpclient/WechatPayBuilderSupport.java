@@ -0,0 +1,92 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import com.wechat.pay.contrib.apache.httpclient.auth.CertificatesVerifier;
+import com.wechat.pay.contrib.apache.httpclient.auth.PooledPrivateKeySigner;
+import com.wechat.pay.contrib.apache.httpclient.auth.PrivateKeySigner;
+import com.wechat.pay.contrib.apache.httpclient.auth.PublicKeyVerifier;
+import com.wechat.pay.contrib.apache.httpclient.auth.Signer;
+import com.wechat.pay.contrib.apache.httpclient.auth.WechatPay2Credentials;
+import com.wechat.pay.contrib.apache.httpclient.auth.WechatPay2Validator;
+import com.wechat.pay.contrib.apache.httpclient.metrics.MetricsListener;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.util.List;
+
+/**
+ * {@link WechatPayHttpClientBuilder}和{@link WechatPayHttpAsyncClientBuilder}共用的签名和验签配置
+ */
+final class WechatPayBuilderSupport {
+
+    private static final String OS = System.getProperty("os.name") + "/" + System.getProperty("os.version");
+    private static final String VERSION = System.getProperty("java.version");
+    private Credentials credentials;
+    private Validator validator;
+    private MetricsListener metrics = MetricsListener.NOOP;
+
+    static String userAgent(String product, Class<?> builderClass) {
+        return String.format(
+                "%s/%s (%s) Java/%s",
+                product,
+                builderClass.getPackage().getImplementationVersion(),
+                OS,
+                VERSION == null ? "Unknown" : VERSION);
+    }
+
+    /**
+     * @param signerPoolSize Signature池容量，大于0时使用{@link PooledPrivateKeySigner}，否则使用{@link PrivateKeySigner}
+     */
+    void setMerchant(String merchantId, String serialNo, PrivateKey privateKey, int signerPoolSize) {
+        Signer signer = signerPoolSize > 0
+                ? new PooledPrivateKeySigner(serialNo, privateKey, signerPoolSize)
+                : new PrivateKeySigner(serialNo, privateKey);
+        this.credentials = new WechatPay2Credentials(merchantId, signer);
+    }
+
+    void setCredentials(Credentials credentials) {
+        this.credentials = credentials;
+    }
+
+    void setWechatPay(List<X509Certificate> certificates) {
+        this.validator = new WechatPay2Validator(new CertificatesVerifier(certificates));
+    }
+
+    void setWechatPay(String publicKeyId, PublicKey publicKey) {
+        this.validator = new WechatPay2Validator(new PublicKeyVerifier(publicKeyId, publicKey));
+    }
+
+    void setValidator(Validator validator) {
+        this.validator = validator;
+    }
+
+    void setMetricsListener(MetricsListener metrics) {
+        if (metrics == null) {
+            throw new IllegalArgumentException("metrics为空");
+        }
+        this.metrics = metrics;
+    }
+
+    /**
+     * 构造客户端前检查必需的配置
+     */
+    void checkComplete() {
+        if (credentials == null) {
+            throw new IllegalArgumentException("缺少身份认证信息");
+        }
+        if (validator == null) {
+            throw new IllegalArgumentException("缺少签名验证信息");
+        }
+    }
+
+    Credentials getCredentials() {
+        return credentials;
+    }
+
+    Validator getValidator() {
+        return validator;
+    }
+
+    MetricsListener getMetricsListener() {
+        return metrics;
+    }
+}
@@ -0,0 +1,216 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import com.wechat.pay.contrib.apache.httpclient.exception.ValidationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPInputStream;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+
+/**
+ * 账单文件下载请求
+ *
+ * <p>账单文件下载的应答不包含微信支付签名，{@link SignatureExec}对这类请求不缓存应答体、不验签，
+ * 应答体由{@link #writeTo(HttpResponse, OutputStream)}或{@link #writeTo(HttpResponse, Path)}边读边写，
+ * 同时增量计算摘要，与申请账单时返回的hash_value比对，文件不会整体读入内存。
+ */
+public class WechatPayDownloadHttpGet extends HttpGet {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String hashType;
+    private final String hashValue;
+    private final boolean gzip;
+
+    private WechatPayDownloadHttpGet(URI uri, String hashType, String hashValue, boolean gzip) {
+        super(uri);
+        this.hashType = hashType;
+        this.hashValue = hashValue;
+        this.gzip = gzip;
+    }
+
+    public String getHashType() {
+        return hashType;
+    }
+
+    public String getHashValue() {
+        return hashValue;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    /**
+     * 将应答体写入输出流并校验摘要。gzip压缩的账单写入解压后的内容
+     *
+     * @param response 执行本请求得到的应答
+     * @param out 输出流，由调用方关闭
+     * @return 写入的字节数
+     * @throws IOException 读取应答体或写入失败
+     * @throws ValidationException 文件摘要与hash_value不一致
+     */
+    public long writeTo(HttpResponse response, OutputStream out) throws IOException, ValidationException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        try (InputStream in = openContent(response)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+                out.write(buffer, 0, n);
+                total += n;
+            }
+        }
+        checkDigest(digest);
+        return total;
+    }
+
+    /**
+     * 将应答体写入文件并校验摘要。内容先写入同目录下的临时文件，摘要一致后再移动到目标位置，
+     * 摘要不一致时不会留下不完整或被篡改的文件
+     *
+     * @param response 执行本请求得到的应答
+     * @param target 目标文件，已存在时覆盖
+     * @return 写入的字节数
+     * @throws IOException 读取应答体或写入失败
+     * @throws ValidationException 文件摘要与hash_value不一致
+     */
+    public long writeTo(HttpResponse response, Path target) throws IOException, ValidationException {
+        Path directory = target.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "." + target.getFileName() + "-", ".tmp");
+        try {
+            MessageDigest digest = newDigest();
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long total = 0;
+            try (InputStream in = openContent(response);
+                    FileChannel channel = FileChannel.open(temp, WRITE, TRUNCATE_EXISTING)) {
+                int n;
+                while ((n = in.read(buffer.array(), 0, buffer.capacity())) != -1) {
+                    buffer.limit(n);
+                    digest.update(buffer);
+                    buffer.rewind();
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    buffer.clear();
+                    total += n;
+                }
+            }
+            checkDigest(digest);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return total;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private InputStream openContent(HttpResponse response) throws IOException {
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            throw new IOException("账单文件应答体为空");
+        }
+        InputStream in = entity.getContent();
+        return gzip ? new GZIPInputStream(in, BUFFER_SIZE) : in;
+    }
+
+    private MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(toAlgorithm(hashType));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("当前Java环境不支持" + hashType, e);
+        }
+    }
+
+    private void checkDigest(MessageDigest digest) throws ValidationException {
+        byte[] hash = digest.digest();
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        if (!hex.toString().equalsIgnoreCase(hashValue)) {
+            throw new ValidationException(String.format("账单文件摘要校验失败。hash_type[%s]\texpected[%s]\tactual[%s]",
+                    hashType, hashValue, hex));
+        }
+    }
+
+    private static String toAlgorithm(String hashType) {
+        switch (hashType.toUpperCase()) {
+            case "SHA1":
+                return "SHA-1";
+            case "SHA256":
+                return "SHA-256";
+            default:
+                throw new IllegalArgumentException("不支持的摘要算法：" + hashType);
+        }
+    }
+
+    public static class Builder {
+
+        private final URI uri;
+        private String hashType;
+        private String hashValue;
+        private boolean gzip;
+
+        /**
+         * @param uri 申请账单返回的download_url
+         */
+        public Builder(URI uri) {
+            if (uri == null) {
+                throw new IllegalArgumentException("账单下载地址为空");
+            }
+            this.uri = uri;
+        }
+
+        /**
+         * @param hashType 申请账单返回的hash_type，如SHA1
+         * @param hashValue 申请账单返回的hash_value
+         */
+        public Builder withHash(String hashType, String hashValue) {
+            if (hashType == null || hashType.isEmpty()) {
+                throw new IllegalArgumentException("摘要算法为空");
+            }
+            toAlgorithm(hashType);
+            this.hashType = hashType;
+            this.hashValue = hashValue;
+            return this;
+        }
+
+        /**
+         * @param tarType 申请账单时的tar_type，GZIP表示账单经过压缩，摘要按解压后的内容计算
+         */
+        public Builder withTarType(String tarType) {
+            this.gzip = "GZIP".equalsIgnoreCase(tarType);
+            return this;
+        }
+
+        public WechatPayDownloadHttpGet build() {
+            if (hashType == null) {
+                throw new IllegalArgumentException("摘要算法为空");
+            }
+            if (hashValue == null || hashValue.isEmpty()) {
+                throw new IllegalArgumentException("账单摘要为空");
+            }
+            return new WechatPayDownloadHttpGet(uri, hashType, hashValue, gzip);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import com.wechat.pay.contrib.apache.httpclient.auth.PooledPrivateKeySigner;
+import com.wechat.pay.contrib.apache.httpclient.auth.PrivateKeySigner;
+import com.wechat.pay.contrib.apache.httpclient.metrics.MetricsListener;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.apache.http.HttpHost;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+
+/**
+ * 构造自动签名和验签的异步HttpClient，用法与{@link WechatPayHttpClientBuilder}相同
+ *
+ * <p>基于Apache HttpAsyncClient 4.1，需自行引入org.apache.httpcomponents:httpasyncclient。
+ * 少量I/O线程即可承载大量并发中的请求，调用方通过返回的Future或FutureCallback获取应答。
+ * 应答的验签在单独的线程池中进行，不占用I/O线程。
+ */
+public class WechatPayHttpAsyncClientBuilder extends HttpAsyncClientBuilder {
+
+    private final WechatPayBuilderSupport support = new WechatPayBuilderSupport();
+    private Executor validationExecutor;
+
+    private WechatPayHttpAsyncClientBuilder() {
+        super();
+
+        setUserAgent(WechatPayBuilderSupport.userAgent("WechatPay-Apache-HttpAsyncClient", getClass()));
+    }
+
+    public static WechatPayHttpAsyncClientBuilder create() {
+        return new WechatPayHttpAsyncClientBuilder();
+    }
+
+    public WechatPayHttpAsyncClientBuilder withMerchant(String merchantId, String serialNo, PrivateKey privateKey) {
+        support.setMerchant(merchantId, serialNo, privateKey, 0);
+        return this;
+    }
+
+    /**
+     * 设置商户信息，并指定签名器复用的Signature池容量
+     *
+     * @param merchantId 商户号
+     * @param serialNo 商户API证书序列号
+     * @param privateKey 商户API私钥
+     * @param signerPoolSize Signature池容量，大于0时使用{@link PooledPrivateKeySigner}，否则使用{@link PrivateKeySigner}
+     * @return builder
+     */
+    public WechatPayHttpAsyncClientBuilder withMerchant(String merchantId, String serialNo, PrivateKey privateKey,
+            int signerPoolSize) {
+        support.setMerchant(merchantId, serialNo, privateKey, signerPoolSize);
+        return this;
+    }
+
+    public WechatPayHttpAsyncClientBuilder withCredentials(Credentials credentials) {
+        support.setCredentials(credentials);
+        return this;
+    }
+
+    public WechatPayHttpAsyncClientBuilder withWechatPay(List<X509Certificate> certificates) {
+        support.setWechatPay(certificates);
+        return this;
+    }
+
+    public WechatPayHttpAsyncClientBuilder withWechatPay(String publicKeyId, PublicKey publicKey) {
+        support.setWechatPay(publicKeyId, publicKey);
+        return this;
+    }
+
+    public WechatPayHttpAsyncClientBuilder withProxy(HttpHost proxy) {
+        if (proxy != null) {
+            this.setProxy(proxy);
+        }
+        return this;
+    }
+
+    public WechatPayHttpAsyncClientBuilder withValidator(Validator validator) {
+        support.setValidator(validator);
+        return this;
+    }
+
+    /**
+     * 设置监听器，接收每个请求签名、执行和验签的耗时及结果
+     *
+     * @param metrics 监听器
+     * @return builder
+     */
+    public WechatPayHttpAsyncClientBuilder withMetricsListener(MetricsListener metrics) {
+        support.setMetricsListener(metrics);
+        return this;
+    }
+
+    /**
+     * 设置执行应答验签的线程池。未设置时使用客户端内部创建的线程池，随客户端关闭
+     *
+     * @param validationExecutor 线程池，由调用方关闭
+     * @return builder
+     */
+    public WechatPayHttpAsyncClientBuilder withValidationExecutor(Executor validationExecutor) {
+        if (validationExecutor == null) {
+            throw new IllegalArgumentException("validationExecutor为空");
+        }
+        this.validationExecutor = validationExecutor;
+        return this;
+    }
+
+    @Override
+    public CloseableHttpAsyncClient build() {
+        support.checkComplete();
+        return new SignatureAsyncClient(super.build(), support.getCredentials(), support.getValidator(),
+                support.getMetricsListener(), validationExecutor);
+    }
+}
@@ -1,10 +1,8 @@
 package com.wechat.pay.contrib.apache.httpclient;
 
-import com.wechat.pay.contrib.apache.httpclient.auth.CertificatesVerifier;
+import com.wechat.pay.contrib.apache.httpclient.auth.PooledPrivateKeySigner;
 import com.wechat.pay.contrib.apache.httpclient.auth.PrivateKeySigner;
-import com.wechat.pay.contrib.apache.httpclient.auth.PublicKeyVerifier;
-import com.wechat.pay.contrib.apache.httpclient.auth.WechatPay2Credentials;
-import com.wechat.pay.contrib.apache.httpclient.auth.WechatPay2Validator;
+import com.wechat.pay.contrib.apache.httpclient.metrics.MetricsListener;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
@@ -19,21 +17,12 @@ import org.apache.http.HttpHost;
  */
 public class WechatPayHttpClientBuilder extends HttpClientBuilder {
 
-    private static final String OS = System.getProperty("os.name") + "/" + System.getProperty("os.version");
-    private static final String VERSION = System.getProperty("java.version");
-    private Credentials credentials;
-    private Validator validator;
-
+    private final WechatPayBuilderSupport support = new WechatPayBuilderSupport();
 
     private WechatPayHttpClientBuilder() {
         super();
 
-        String userAgent = String.format(
-                "WechatPay-Apache-HttpClient/%s (%s) Java/%s",
-                getClass().getPackage().getImplementationVersion(),
-                OS,
-                VERSION == null ? "Unknown" : VERSION);
-        setUserAgent(userAgent);
+        setUserAgent(WechatPayBuilderSupport.userAgent("WechatPay-Apache-HttpClient", getClass()));
     }
 
     public static WechatPayHttpClientBuilder create() {
@@ -41,22 +30,37 @@ public class WechatPayHttpClientBuilder extends HttpClientBuilder {
     }
 
     public WechatPayHttpClientBuilder withMerchant(String merchantId, String serialNo, PrivateKey privateKey) {
-        this.credentials = new WechatPay2Credentials(merchantId, new PrivateKeySigner(serialNo, privateKey));
+        support.setMerchant(merchantId, serialNo, privateKey, 0);
+        return this;
+    }
+
+    /**
+     * 设置商户信息，并指定签名器复用的Signature池容量
+     *
+     * @param merchantId 商户号
+     * @param serialNo 商户API证书序列号
+     * @param privateKey 商户API私钥
+     * @param signerPoolSize Signature池容量，大于0时使用{@link PooledPrivateKeySigner}，否则使用{@link PrivateKeySigner}
+     * @return builder
+     */
+    public WechatPayHttpClientBuilder withMerchant(String merchantId, String serialNo, PrivateKey privateKey,
+            int signerPoolSize) {
+        support.setMerchant(merchantId, serialNo, privateKey, signerPoolSize);
         return this;
     }
 
     public WechatPayHttpClientBuilder withCredentials(Credentials credentials) {
-        this.credentials = credentials;
+        support.setCredentials(credentials);
         return this;
     }
 
     public WechatPayHttpClientBuilder withWechatPay(List<X509Certificate> certificates) {
-        this.validator = new WechatPay2Validator(new CertificatesVerifier(certificates));
+        support.setWechatPay(certificates);
         return this;
     }
 
     public WechatPayHttpClientBuilder withWechatPay(String publicKeyId, PublicKey publicKey) {
-        this.validator = new WechatPay2Validator(new PublicKeyVerifier(publicKeyId, publicKey));
+        support.setWechatPay(publicKeyId, publicKey);
         return this;
     }
 
@@ -80,24 +84,31 @@ public class WechatPayHttpClientBuilder extends HttpClientBuilder {
     }
 
     public WechatPayHttpClientBuilder withValidator(Validator validator) {
-        this.validator = validator;
+        support.setValidator(validator);
+        return this;
+    }
+
+    /**
+     * 设置监听器，接收每个请求签名、执行和验签的耗时及结果
+     *
+     * @param metrics 监听器
+     * @return builder
+     */
+    public WechatPayHttpClientBuilder withMetricsListener(MetricsListener metrics) {
+        support.setMetricsListener(metrics);
         return this;
     }
 
     @Override
     public CloseableHttpClient build() {
-        if (credentials == null) {
-            throw new IllegalArgumentException("缺少身份认证信息");
-        }
-        if (validator == null) {
-            throw new IllegalArgumentException("缺少签名验证信息");
-        }
+        support.checkComplete();
         return super.build();
     }
 
     @Override
     protected ClientExecChain decorateProtocolExec(final ClientExecChain requestExecutor) {
-        return new SignatureExec(this.credentials, this.validator, requestExecutor);
+        return new SignatureExec(support.getCredentials(), support.getValidator(), requestExecutor,
+                support.getMetricsListener());
     }
 
 }
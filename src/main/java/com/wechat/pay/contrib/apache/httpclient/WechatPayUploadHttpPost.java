@@ -3,23 +3,32 @@ package com.wechat.pay.contrib.apache.httpclient;
 import static org.apache.http.HttpHeaders.ACCEPT;
 import static org.apache.http.entity.ContentType.APPLICATION_JSON;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 import org.apache.http.HttpEntity;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
+import org.apache.http.entity.HttpEntityWrapper;
 import org.apache.http.entity.mime.HttpMultipartMode;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * 以输入流上传并通过{@link Builder#withSpoolThreshold(int)}启用记录时，请求持有内存缓冲区和临时文件，
+ * 应在使用完毕后调用{@link #close()}（或使用try-with-resources）释放
+ *
  * @author xy-peng
  */
-public class WechatPayUploadHttpPost extends HttpPost {
+public class WechatPayUploadHttpPost extends HttpPost implements Closeable {
 
     private final String meta;
+    private Closeable spool;
     private static final Logger log = LoggerFactory.getLogger(WechatPayUploadHttpPost.class);
 
     private WechatPayUploadHttpPost(URI uri, String meta) {
@@ -31,13 +40,62 @@ public class WechatPayUploadHttpPost extends HttpPost {
         return meta;
     }
 
+    /**
+     * 释放连接，同时释放以输入流上传时记录的内容
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        releaseSpool();
+    }
+
+    /**
+     * 释放以输入流上传时记录在内存中的内容并删除临时文件，释放后请求不能再发送。未启用记录时不做任何处理
+     */
+    @Override
+    public void close() {
+        releaseSpool();
+    }
+
+    private void releaseSpool() {
+        if (spool != null) {
+            try {
+                spool.close();
+            } catch (IOException e) {
+                log.warn("删除上传临时文件失败", e);
+            }
+        }
+    }
+
+    /**
+     * 标记为可重复读取的请求体，使连接被重置时可以自动重试
+     */
+    private static class RepeatableEntity extends HttpEntityWrapper {
+
+        RepeatableEntity(HttpEntity entity) {
+            super(entity);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+    }
+
     public static class Builder {
 
         private final URI uri;
         private String fileName;
         private InputStream fileInputStream;
+        private FileChannelBody fileBody;
         private ContentType fileContentType;
         private String meta;
+        private int spoolThreshold = -1;
 
         public Builder(URI uri) {
             if (uri == null) {
@@ -47,32 +105,88 @@ public class WechatPayUploadHttpPost extends HttpPost {
         }
 
         public Builder withImage(String fileName, String fileSha256, InputStream inputStream) {
-            if (fileSha256 == null || fileSha256.isEmpty()) {
-                throw new IllegalArgumentException("文件摘要为空");
-            }
-            meta = String.format("{\"filename\":\"%s\",\"sha256\":\"%s\"}", fileName, fileSha256);
-            return withFile(fileName, meta, inputStream);
+            return withFile(fileName, buildMeta(fileName, fileSha256), inputStream);
+        }
+
+        /**
+         * 上传本地文件。以内存映射的方式读一遍文件计算SHA-256并生成元信息，发送时由FileChannel直接写出，
+         * 不需要调用方预先计算摘要，也不会把文件读入堆内存
+         *
+         * @param file 待上传的图片或视频文件，文件名取自路径
+         */
+        public Builder withImage(Path file) throws IOException {
+            String name = String.valueOf(file.getFileName());
+            FileChannelBody body = new FileChannelBody(file, guessContentType(name), name);
+            return withFileBody(name, buildMeta(name, body.sha256Hex()), body);
+        }
+
+        /**
+         * 上传FileChannel从当前position到末尾的内容，摘要的计算方式同{@link #withImage(Path)}。channel由调用方关闭
+         */
+        public Builder withImage(String fileName, FileChannel channel) throws IOException {
+            FileChannelBody body = new FileChannelBody(channel, guessContentType(fileName), fileName);
+            return withFileBody(fileName, buildMeta(fileName, body.sha256Hex()), body);
         }
 
         public Builder withFile(String fileName, String meta, InputStream inputStream) {
             this.fileName = fileName;
             this.fileInputStream = inputStream;
+            this.fileBody = null;
+            this.fileContentType = guessContentType(fileName);
+            this.meta = meta;
+            return this;
+        }
+
+        public Builder withFile(String fileName, String meta, Path file) throws IOException {
+            return withFileBody(fileName, meta, new FileChannelBody(file, guessContentType(fileName), fileName));
+        }
+
+        public Builder withFile(String fileName, String meta, FileChannel channel) throws IOException {
+            return withFileBody(fileName, meta, new FileChannelBody(channel, guessContentType(fileName), fileName));
+        }
+
+        /**
+         * 以输入流上传时记录输入流的内容，使请求可以重复发送。默认不记录，直接发送输入流，请求不能重试。
+         * 内容在第一次发送时被记录下来，不超过阈值的部分保存在内存中，超出的部分写入临时文件；
+         * 请求使用完毕后须调用{@link WechatPayUploadHttpPost#close()}释放
+         *
+         * @param spoolThreshold 在内存中保存的最大字节数，负数表示不记录
+         */
+        public Builder withSpoolThreshold(int spoolThreshold) {
+            this.spoolThreshold = spoolThreshold;
+            return this;
+        }
+
+        private Builder withFileBody(String fileName, String meta, FileChannelBody body) {
+            this.fileName = fileName;
+            this.fileInputStream = null;
+            this.fileBody = body;
+            this.fileContentType = body.getContentType();
+            this.meta = meta;
+            return this;
+        }
+
+        private static String buildMeta(String fileName, String fileSha256) {
+            if (fileSha256 == null || fileSha256.isEmpty()) {
+                throw new IllegalArgumentException("文件摘要为空");
+            }
+            return String.format("{\"filename\":\"%s\",\"sha256\":\"%s\"}", fileName, fileSha256);
+        }
+
+        private static ContentType guessContentType(String fileName) {
             String mimeType = URLConnection.guessContentTypeFromName(fileName);
             if (mimeType == null) {
                 // guess this is a video uploading
-                this.fileContentType = ContentType.APPLICATION_OCTET_STREAM;
-            } else {
-                this.fileContentType = ContentType.create(mimeType);
+                return ContentType.APPLICATION_OCTET_STREAM;
             }
-            this.meta = meta;
-            return this;
+            return ContentType.create(mimeType);
         }
 
         public WechatPayUploadHttpPost build() {
             if (fileName == null || fileName.isEmpty()) {
                 throw new IllegalArgumentException("文件名称为空");
             }
-            if (fileInputStream == null) {
+            if (fileInputStream == null && fileBody == null) {
                 throw new IllegalArgumentException("文件为空");
             }
             if (fileContentType == null) {
@@ -84,9 +198,22 @@ public class WechatPayUploadHttpPost extends HttpPost {
             WechatPayUploadHttpPost request = new WechatPayUploadHttpPost(uri, meta);
             MultipartEntityBuilder entityBuilder = MultipartEntityBuilder.create();
             entityBuilder.setMode(HttpMultipartMode.RFC6532)
-                    .addTextBody("meta", meta, APPLICATION_JSON)
-                    .addBinaryBody("file", fileInputStream, fileContentType, fileName);
+                    .addTextBody("meta", meta, APPLICATION_JSON);
+            SpoolingBody spoolingBody = null;
+            if (fileBody != null) {
+                entityBuilder.addPart("file", fileBody);
+            } else if (spoolThreshold >= 0) {
+                spoolingBody = new SpoolingBody(fileInputStream, fileContentType, fileName, spoolThreshold);
+                entityBuilder.addPart("file", spoolingBody);
+            } else {
+                entityBuilder.addBinaryBody("file", fileInputStream, fileContentType, fileName);
+            }
             HttpEntity entity = entityBuilder.build();
+            if (spoolingBody != null) {
+                // 长度未知的multipart实体默认不可重复读取，但SpoolingBody可以重放
+                entity = new RepeatableEntity(entity);
+                request.spool = spoolingBody;
+            }
             request.setEntity(entity);
             request.addHeader(ACCEPT, APPLICATION_JSON.toString());
             log.debug("request content-type[{}]", entity.getContentType());
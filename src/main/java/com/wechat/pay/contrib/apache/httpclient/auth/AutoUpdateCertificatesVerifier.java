@@ -1,20 +1,18 @@
 package com.wechat.pay.contrib.apache.httpclient.auth;
 
-import static org.apache.http.HttpHeaders.ACCEPT;
-import static org.apache.http.HttpStatus.SC_OK;
-import static org.apache.http.entity.ContentType.APPLICATION_JSON;
-
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.wechat.pay.contrib.apache.httpclient.Credentials;
 import com.wechat.pay.contrib.apache.httpclient.Validator;
-import com.wechat.pay.contrib.apache.httpclient.WechatPayHttpClientBuilder;
+import com.wechat.pay.contrib.apache.httpclient.cert.CertificateDownloader;
+import com.wechat.pay.contrib.apache.httpclient.exception.HttpCodeException;
 import com.wechat.pay.contrib.apache.httpclient.util.AesUtil;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.security.PublicKey;
+import java.security.cert.CertificateException;
 import java.security.cert.CertificateExpiredException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.CertificateNotYetValidException;
@@ -23,12 +21,15 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,16 +37,24 @@ import org.slf4j.LoggerFactory;
  * 在原有CertificatesVerifier基础上，增加自动更新证书功能
  * 该类已废弃，请使用CertificatesManager
  *
+ * <p>默认在验签时检查证书是否需要更新，由请求线程同步下载证书。
+ * 使用后台更新模式构造时，证书由后台线程按间隔（附加随机抖动）定时更新，请求线程只读取当前证书。
+ *
  * @author xy-peng
  */
 @Deprecated
 public class AutoUpdateCertificatesVerifier implements Verifier {
 
     protected static final Logger log = LoggerFactory.getLogger(AutoUpdateCertificatesVerifier.class);
+    private static final String REFRESH_THREAD_NAME = "auto_update_cert_thread";
     /**
-     * 证书下载地址
+     * 后台更新的随机抖动上限，为更新间隔的十分之一
      */
-    private static final String CERT_DOWNLOAD_PATH = "https://api.mch.weixin.qq.com/v3/certificates";
+    private static final int JITTER_DIVISOR = 10;
+    /**
+     * 两次更新尝试之间的最小间隔，用于后台立即更新和同步更新失败后的重试
+     */
+    private static final long MIN_RETRY_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
     /**
      * 证书更新间隔时间，单位为分钟
      */
@@ -53,11 +62,32 @@ public class AutoUpdateCertificatesVerifier implements Verifier {
     protected final Credentials credentials;
     protected final byte[] apiV3Key;
     protected final ReentrantLock lock = new ReentrantLock();
+    /**
+     * 多次下载之间复用连接的证书下载器，在{@link #stop()}时关闭。
+     * 下载器不持有线程，空闲连接在下次下载前按空闲超时关闭
+     */
+    private final CertificateDownloader downloader;
     /**
      * 上次更新时间
      */
     protected volatile Instant lastUpdateTime;
-    protected CertificatesVerifier verifier;
+    protected volatile CertificatesVerifier verifier;
+    /**
+     * 子类重写了verify时，流式验签也经由其实现
+     */
+    private final boolean verifyOverridden = MethodOverrides.isOverridden(getClass(),
+            AutoUpdateCertificatesVerifier.class, "verify", String.class, byte[].class, String.class);
+    /**
+     * 后台更新模式下，证书允许的最大陈旧时间，单位为分钟
+     */
+    protected final long maxStalenessMinutes;
+    /**
+     * 后台更新线程，为null时由请求线程同步更新
+     */
+    protected final ScheduledExecutorService refreshExecutor;
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    private final AtomicLong refreshFailureCount = new AtomicLong();
+    private volatile long lastAttemptMillis;
 
     private static final Validator emptyValidator =
             new Validator() {
@@ -77,35 +107,179 @@ public class AutoUpdateCertificatesVerifier implements Verifier {
     }
 
     public AutoUpdateCertificatesVerifier(Credentials credentials, byte[] apiV3Key, long minutesInterval) {
+        this(credentials, apiV3Key, minutesInterval, 0, false);
+    }
+
+    /**
+     * 使用后台更新模式构造，请求线程不会执行证书下载
+     *
+     * @param credentials 认证器
+     * @param apiV3Key APIv3密钥
+     * @param minutesInterval 证书更新间隔时间，单位为分钟
+     * @param maxStalenessMinutes 证书允许的最大陈旧时间，单位为分钟。超过后验签时会触发一次后台立即更新
+     */
+    public AutoUpdateCertificatesVerifier(Credentials credentials, byte[] apiV3Key, long minutesInterval,
+            long maxStalenessMinutes) {
+        this(credentials, apiV3Key, minutesInterval, maxStalenessMinutes, true);
+    }
+
+    private AutoUpdateCertificatesVerifier(Credentials credentials, byte[] apiV3Key, long minutesInterval,
+            long maxStalenessMinutes, boolean backgroundRefresh) {
+        if (backgroundRefresh && maxStalenessMinutes < minutesInterval) {
+            throw new IllegalArgumentException("maxStalenessMinutes不能小于minutesInterval");
+        }
         this.credentials = credentials;
         this.apiV3Key = apiV3Key;
         this.minutesInterval = minutesInterval;
+        this.maxStalenessMinutes = maxStalenessMinutes;
+        this.downloader = new CertificateDownloader.Builder()
+                .withMaxConnections(2)
+                .build();
         //构造时更新证书
         try {
             autoUpdateCert();
             lastUpdateTime = Instant.now();
         } catch (IOException | GeneralSecurityException e) {
+            downloader.close();
             throw new RuntimeException(e);
         }
+        if (backgroundRefresh) {
+            refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, REFRESH_THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduleRefresh();
+        } else {
+            refreshExecutor = null;
+        }
     }
 
     @Override
     public boolean verify(String serialNumber, byte[] message, String signature) {
-        if (lastUpdateTime == null
-                || Duration.between(lastUpdateTime, Instant.now()).toMinutes() >= minutesInterval) {
-            if (lock.tryLock()) {
+        refreshIfNeeded();
+        return verifier.verify(serialNumber, message, signature);
+    }
+
+    @Override
+    public boolean verify(String serialNumber, MessageWriter message, String signature) throws IOException {
+        if (verifyOverridden) {
+            return Verifier.super.verify(serialNumber, message, signature);
+        }
+        refreshIfNeeded();
+        return verifier.verify(serialNumber, message, signature);
+    }
+
+    private void refreshIfNeeded() {
+        if (refreshExecutor != null) {
+            if (isStale()) {
+                requestRefresh();
+            }
+        } else if ((lastUpdateTime == null
+                || Duration.between(lastUpdateTime, Instant.now()).toMinutes() >= minutesInterval)
+                && System.currentTimeMillis() - lastAttemptMillis >= MIN_RETRY_INTERVAL_MILLIS) {
+            // 更新失败时上次更新时间不变，距上次尝试不足一分钟时不再重试，避免每次验签都同步下载
+            refresh();
+        }
+    }
+
+    /**
+     * 下载并更新证书，已有线程在更新时直接返回。仅在证书被替换后更新上次更新时间，失败时累计失败次数
+     *
+     * @return 本次是否更新成功
+     */
+    protected boolean refresh() {
+        if (!lock.tryLock()) {
+            return false;
+        }
+        try {
+            lastAttemptMillis = System.currentTimeMillis();
+            autoUpdateCert();
+            //更新时间
+            lastUpdateTime = Instant.now();
+            return true;
+        } catch (GeneralSecurityException | IOException | RuntimeException e) {
+            refreshFailureCount.incrementAndGet();
+            log.warn("Auto update cert failed: ", e);
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void scheduleRefresh() {
+        long intervalMillis = TimeUnit.MINUTES.toMillis(minutesInterval);
+        long jitterMillis = ThreadLocalRandom.current().nextLong(intervalMillis / JITTER_DIVISOR + 1);
+        try {
+            refreshExecutor.schedule(() -> {
+                refresh();
+                scheduleRefresh();
+            }, intervalMillis + jitterMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("Auto update cert executor has been stopped");
+        }
+    }
+
+    /**
+     * 在后台线程立即更新一次证书，已有待执行的更新或距上次尝试不足一分钟时忽略
+     */
+    private void requestRefresh() {
+        if (System.currentTimeMillis() - lastAttemptMillis < MIN_RETRY_INTERVAL_MILLIS
+                || !refreshPending.compareAndSet(false, true)) {
+            return;
+        }
+        log.warn("Certificates are stale, last update time: {}", lastUpdateTime);
+        try {
+            refreshExecutor.execute(() -> {
                 try {
-                    autoUpdateCert();
-                    //更新时间
-                    lastUpdateTime = Instant.now();
-                } catch (GeneralSecurityException | IOException e) {
-                    log.warn("Auto update cert failed: ", e);
+                    refresh();
                 } finally {
-                    lock.unlock();
+                    refreshPending.set(false);
                 }
-            }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshPending.set(false);
         }
-        return verifier.verify(serialNumber, message, signature);
+    }
+
+    /**
+     * @return 证书距上次成功更新的时长
+     */
+    public Duration getRefreshAge() {
+        return Duration.between(lastUpdateTime, Instant.now());
+    }
+
+    public Instant getLastUpdateTime() {
+        return lastUpdateTime;
+    }
+
+    /**
+     * @return 更新证书失败的累计次数
+     */
+    public long getRefreshFailureCount() {
+        return refreshFailureCount.get();
+    }
+
+    /**
+     * @return 后台更新模式下，证书是否已超过最大陈旧时间
+     */
+    public boolean isStale() {
+        return refreshExecutor != null && getRefreshAge().toMinutes() >= maxStalenessMinutes;
+    }
+
+    /**
+     * 停止后台更新并关闭证书下载器的连接池，停止后无法再更新证书
+     */
+    public void stop() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+        downloader.close();
+    }
+
+    @Override
+    public boolean containsSerialNumber(String serialNumber) {
+        return verifier.containsSerialNumber(serialNumber);
     }
 
     @Override
@@ -118,30 +292,25 @@ public class AutoUpdateCertificatesVerifier implements Verifier {
         return verifier.getSerialNumber();
     }
 
+    /**
+     * 下载证书并替换当前证书，只有替换成功时才正常返回
+     *
+     * @throws IOException 下载失败或应答码异常
+     * @throws GeneralSecurityException 解密或解析证书失败，或没有有效的证书
+     */
     protected void autoUpdateCert() throws IOException, GeneralSecurityException {
-        try (CloseableHttpClient httpClient = WechatPayHttpClientBuilder.create()
-                .withCredentials(credentials)
-                .withValidator(verifier == null ? emptyValidator : new WechatPay2Validator(verifier))
-                .build()) {
-
-            HttpGet httpGet = new HttpGet(CERT_DOWNLOAD_PATH);
-            httpGet.addHeader(ACCEPT, APPLICATION_JSON.toString());
-
-            try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
-                int statusCode = response.getStatusLine().getStatusCode();
-                String body = EntityUtils.toString(response.getEntity());
-                if (statusCode == SC_OK) {
-                    List<X509Certificate> newCertList = deserializeToCerts(apiV3Key, body);
-                    if (newCertList.isEmpty()) {
-                        log.warn("Cert list is empty");
-                        return;
-                    }
-                    this.verifier = new CertificatesVerifier(newCertList);
-                } else {
-                    log.warn("Auto update cert failed, statusCode = {}, body = {}", statusCode, body);
-                }
-            }
+        String body;
+        try {
+            body = downloader.download(credentials,
+                    verifier == null ? emptyValidator : new WechatPay2Validator(verifier), null);
+        } catch (HttpCodeException e) {
+            throw new IOException("下载平台证书失败，" + e.getMessage(), e);
+        }
+        List<X509Certificate> newCertList = deserializeToCerts(apiV3Key, body);
+        if (newCertList.isEmpty()) {
+            throw new CertificateException("平台证书列表为空");
         }
+        this.verifier = new CertificatesVerifier(newCertList);
     }
 
     protected List<X509Certificate> deserializeToCerts(byte[] apiV3Key, String body)
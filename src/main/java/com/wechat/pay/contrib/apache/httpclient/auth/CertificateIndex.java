@@ -0,0 +1,134 @@
+package com.wechat.pay.contrib.apache.httpclient.auth;
+
+import java.math.BigInteger;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 不可变的平台证书索引
+ *
+ * <p>以证书序列号的大写十六进制字符串（即应答头Wechatpay-Serial的格式）为键，值为该证书的验签引擎。
+ * 查找时优先按原始字符串匹配，仅在未命中时才解析为BigInteger，以兼容小写或带前导零的序列号。
+ *
+ * <p>构造时预先选出有效开始时间最晚的证书并计算其序列号，请求时只需比较当前时间与该证书的有效期，
+ * 无需遍历证书。证书集合变化时整体替换索引。
+ */
+public final class CertificateIndex {
+
+    private static final CertificateIndex EMPTY = new CertificateIndex(Collections.emptyMap());
+
+    private final Map<String, VerificationEngine> engines;
+    private final X509Certificate latestCertificate;
+    private final String latestSerialNumber;
+    private final long notBefore;
+    private final long notAfter;
+
+    private CertificateIndex(Map<String, VerificationEngine> engines) {
+        this.engines = engines;
+        X509Certificate latest = null;
+        String latestSerial = null;
+        for (Map.Entry<String, VerificationEngine> entry : engines.entrySet()) {
+            X509Certificate certificate = entry.getValue().getCertificate();
+            // 若latest为空或certificate的证书有效开始时间在latest之后，则更新latest
+            if (latest == null || certificate.getNotBefore().after(latest.getNotBefore())) {
+                latest = certificate;
+                latestSerial = entry.getKey();
+            }
+        }
+        this.latestCertificate = latest;
+        this.latestSerialNumber = latestSerial;
+        this.notBefore = latest == null ? Long.MAX_VALUE : latest.getNotBefore().getTime();
+        this.notAfter = latest == null ? Long.MIN_VALUE : latest.getNotAfter().getTime();
+    }
+
+    public static CertificateIndex empty() {
+        return EMPTY;
+    }
+
+    public static CertificateIndex of(Collection<X509Certificate> certificates) {
+        return EMPTY.update(certificates);
+    }
+
+    /**
+     * 生成包含给定证书的新索引。与当前索引相同的证书沿用已有的验签引擎
+     *
+     * @param certificates 平台证书
+     * @return 新索引
+     */
+    public CertificateIndex update(Collection<X509Certificate> certificates) {
+        Map<String, VerificationEngine> newEngines = new HashMap<>();
+        for (X509Certificate certificate : certificates) {
+            String serialNumber = toSerialNumber(certificate.getSerialNumber());
+            VerificationEngine engine = engines.get(serialNumber);
+            if (engine == null || !engine.getCertificate().equals(certificate)) {
+                engine = new VerificationEngine(certificate);
+            }
+            newEngines.put(serialNumber, engine);
+        }
+        return new CertificateIndex(Collections.unmodifiableMap(newEngines));
+    }
+
+    /**
+     * 获取序列号对应的验签引擎
+     *
+     * @param serialNumber 平台证书序列号
+     * @return 验签引擎，找不到时为null
+     */
+    public VerificationEngine getEngine(String serialNumber) {
+        VerificationEngine engine = engines.get(serialNumber);
+        if (engine != null || serialNumber == null) {
+            return engine;
+        }
+        try {
+            return engines.get(toSerialNumber(new BigInteger(serialNumber, 16)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public X509Certificate getCertificate(String serialNumber) {
+        VerificationEngine engine = getEngine(serialNumber);
+        return engine == null ? null : engine.getCertificate();
+    }
+
+    /**
+     * @return 有效开始时间最晚的证书，索引为空时为null
+     */
+    public X509Certificate getLatestCertificate() {
+        return latestCertificate;
+    }
+
+    /**
+     * @return 有效开始时间最晚且当前处于有效期内的证书，不存在时为null
+     */
+    public X509Certificate getValidCertificate() {
+        return isLatestValid() ? latestCertificate : null;
+    }
+
+    /**
+     * @return 有效开始时间最晚且当前处于有效期内的证书序列号，不存在时为null
+     */
+    public String getValidSerialNumber() {
+        return isLatestValid() ? latestSerialNumber : null;
+    }
+
+    private boolean isLatestValid() {
+        long now = System.currentTimeMillis();
+        return now >= notBefore && now <= notAfter;
+    }
+
+    public boolean isEmpty() {
+        return engines.isEmpty();
+    }
+
+    public int size() {
+        return engines.size();
+    }
+
+    public static String toSerialNumber(BigInteger serialNumber) {
+        return serialNumber.toString(16).toUpperCase();
+    }
+}
@@ -0,0 +1,41 @@
+package com.wechat.pay.contrib.apache.httpclient.auth;
+
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 写时复制的平台证书存储
+ *
+ * <p>证书保存在不可变的CertificateIndex中，更新时先构造完整的新索引，再通过一次原子替换发布。
+ * 读取方总是看到更新前或更新后的完整证书集合，不会看到被清空的中间状态，且无需加锁。
+ */
+public final class CertificateStore {
+
+    private final AtomicReference<CertificateIndex> snapshot;
+
+    public CertificateStore() {
+        this.snapshot = new AtomicReference<>(CertificateIndex.empty());
+    }
+
+    public CertificateStore(Collection<X509Certificate> certificates) {
+        this.snapshot = new AtomicReference<>(CertificateIndex.of(certificates));
+    }
+
+    /**
+     * @return 当前的证书快照
+     */
+    public CertificateIndex get() {
+        return snapshot.get();
+    }
+
+    /**
+     * 以给定证书替换当前证书集合，未变化的证书沿用已有的验签引擎
+     *
+     * @param certificates 新的平台证书
+     * @return 替换后的证书快照
+     */
+    public CertificateIndex update(Collection<X509Certificate> certificates) {
+        return snapshot.updateAndGet(index -> index.update(certificates));
+    }
+}
@@ -1,16 +1,9 @@
 package com.wechat.pay.contrib.apache.httpclient.auth;
 
+import java.io.IOException;
 import java.math.BigInteger;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
-import java.security.Signature;
-import java.security.SignatureException;
-import java.security.cert.CertificateExpiredException;
-import java.security.cert.CertificateNotYetValidException;
 import java.security.cert.X509Certificate;
-import java.util.Base64;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -23,65 +16,80 @@ import org.slf4j.LoggerFactory;
 public class CertificatesVerifier implements Verifier {
 
     private static final Logger log = LoggerFactory.getLogger(CertificatesVerifier.class);
-    protected final HashMap<BigInteger, X509Certificate> certificates = new HashMap<>();
+    protected final CertificateStore store;
+    /**
+     * 子类重写了verify时，流式验签也经由其实现
+     */
+    private final boolean verifyOverridden = MethodOverrides.isOverridden(getClass(), CertificatesVerifier.class,
+            "verify", String.class, byte[].class, String.class);
+    /**
+     * 子类重写了按证书验签的方法时，按序列号验签经由其实现
+     */
+    private final boolean certificateVerifyOverridden = MethodOverrides.isOverridden(getClass(),
+            CertificatesVerifier.class, "verify", X509Certificate.class, byte[].class, String.class);
 
     public CertificatesVerifier(List<X509Certificate> list) {
-        for (X509Certificate item : list) {
-            certificates.put(item.getSerialNumber(), item);
-        }
+        this.store = new CertificateStore(list);
     }
 
     public CertificatesVerifier(Map<BigInteger, X509Certificate> certificates) {
-        this.certificates.putAll(certificates);
+        this.store = new CertificateStore(certificates.values());
     }
 
 
     public void updateCertificates(Map<BigInteger, X509Certificate> certificates) {
-        this.certificates.clear();
-        this.certificates.putAll(certificates);
+        store.update(certificates.values());
     }
 
+    /**
+     * 使用给定证书验签。证书在当前证书集合中时复用其验签引擎
+     */
     protected boolean verify(X509Certificate certificate, byte[] message, String signature) {
-        try {
-            Signature sign = Signature.getInstance("SHA256withRSA");
-            sign.initVerify(certificate);
-            sign.update(message);
-            return sign.verify(Base64.getDecoder().decode(signature));
-
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("当前Java环境不支持SHA256withRSA", e);
-        } catch (SignatureException e) {
-            throw new RuntimeException("签名验证过程发生了错误", e);
-        } catch (InvalidKeyException e) {
-            throw new RuntimeException("无效的证书", e);
+        String serialNumber = CertificateIndex.toSerialNumber(certificate.getSerialNumber());
+        VerificationEngine engine = store.get().getEngine(serialNumber);
+        if (engine == null || !engine.getCertificate().equals(certificate)) {
+            engine = new VerificationEngine(certificate);
         }
+        return engine.verify(message, signature);
     }
 
     @Override
     public boolean verify(String serialNumber, byte[] message, String signature) {
-        BigInteger val = new BigInteger(serialNumber, 16);
-        X509Certificate cert = certificates.get(val);
-        if (cert == null) {
+        VerificationEngine engine = store.get().getEngine(serialNumber);
+        if (engine == null) {
             log.error("找不到证书序列号对应的证书，序列号：{}", serialNumber);
             return false;
         }
-        return verify(cert, message, signature);
+        if (certificateVerifyOverridden) {
+            return verify(engine.getCertificate(), message, signature);
+        }
+        return engine.verify(message, signature);
     }
 
-    public X509Certificate getValidCertificate() {
-        X509Certificate latestCert = null;
-        for (X509Certificate x509Cert : certificates.values()) {
-            // 若latestCert为空或x509Cert的证书有效开始时间在latestCert之后，则更新latestCert
-            if (latestCert == null || x509Cert.getNotBefore().after(latestCert.getNotBefore())) {
-                latestCert = x509Cert;
-            }
+    @Override
+    public boolean verify(String serialNumber, MessageWriter message, String signature) throws IOException {
+        if (verifyOverridden || certificateVerifyOverridden) {
+            return Verifier.super.verify(serialNumber, message, signature);
         }
-        try {
-            latestCert.checkValidity();
-            return latestCert;
-        } catch (CertificateExpiredException | CertificateNotYetValidException e) {
+        VerificationEngine engine = store.get().getEngine(serialNumber);
+        if (engine == null) {
+            log.error("找不到证书序列号对应的证书，序列号：{}", serialNumber);
+            return false;
+        }
+        return engine.verify(message, signature);
+    }
+
+    @Override
+    public boolean containsSerialNumber(String serialNumber) {
+        return store.get().getEngine(serialNumber) != null;
+    }
+
+    public X509Certificate getValidCertificate() {
+        X509Certificate certificate = store.get().getValidCertificate();
+        if (certificate == null) {
             throw new NoSuchElementException("没有有效的微信支付平台证书");
         }
+        return certificate;
     }
 
 
@@ -92,7 +100,11 @@ public class CertificatesVerifier implements Verifier {
 
     @Override
     public String getSerialNumber() {
-        return getValidCertificate().getSerialNumber().toString(16).toUpperCase();
+        String serialNumber = store.get().getValidSerialNumber();
+        if (serialNumber == null) {
+            throw new NoSuchElementException("没有有效的微信支付平台证书");
+        }
+        return serialNumber;
     }
 }
 
@@ -0,0 +1,21 @@
+package com.wechat.pay.contrib.apache.httpclient.auth;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 将签名串写入输出流，用于在不缓存完整签名串的情况下计算签名
+ *
+ * @see Signer#sign(MessageWriter)
+ */
+@FunctionalInterface
+public interface MessageWriter {
+
+    /**
+     * 将签名串写入输出流
+     *
+     * @param out 输出流
+     * @throws IOException 读取请求体等发生IO错误
+     */
+    void writeTo(OutputStream out) throws IOException;
+}
@@ -0,0 +1,31 @@
+package com.wechat.pay.contrib.apache.httpclient.auth;
+
+/**
+ * 判断子类是否重写了指定方法，用于在子类重写了原有方法时保留原有的调用路径
+ */
+final class MethodOverrides {
+
+    private MethodOverrides() {
+    }
+
+    /**
+     * @param clazz 实际的类
+     * @param base 声明该方法的基类
+     * @param name 方法名
+     * @param parameterTypes 参数类型
+     * @return clazz与base之间的类是否重新声明了该方法
+     */
+    static boolean isOverridden(Class<?> clazz, Class<?> base, String name, Class<?>... parameterTypes) {
+        for (Class<?> c = clazz; c != null && c != base; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod(name, parameterTypes);
+                return true;
+            } catch (NoSuchMethodException ignored) {
+                // 继续检查父类
+            } catch (SecurityException e) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -42,6 +42,14 @@ public class MixVerifier implements Verifier {
         return false;
     }
 
+    @Override
+    public boolean containsSerialNumber(String serialNumber) {
+        if (Objects.equals(publicKeyVerifier.getSerialNumber(), serialNumber)) {
+            return true;
+        }
+        return certificateVerifier != null && certificateVerifier.containsSerialNumber(serialNumber);
+    }
+
     @Override
     public PublicKey getValidPublicKey() {
         return publicKeyVerifier.getValidPublicKey();
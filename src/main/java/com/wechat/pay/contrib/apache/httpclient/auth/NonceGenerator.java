@@ -0,0 +1,15 @@
+package com.wechat.pay.contrib.apache.httpclient.auth;
+
+/**
+ * 请求签名使用的随机串生成器
+ *
+ * @see WechatPay2Credentials#WechatPay2Credentials(String, Signer, NonceGenerator)
+ */
+@FunctionalInterface
+public interface NonceGenerator {
+
+    /**
+     * @return 32位由数字和大小写字母组成的随机串
+     */
+    String generateNonce();
+}
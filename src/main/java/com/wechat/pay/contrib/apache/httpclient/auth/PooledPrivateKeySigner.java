@@ -0,0 +1,93 @@
+package com.wechat.pay.contrib.apache.httpclient.auth;
+
+import com.wechat.pay.contrib.apache.httpclient.jfr.SignEvent;
+import com.wechat.pay.contrib.apache.httpclient.jfr.WechatPayEvents;
+import com.wechat.pay.contrib.apache.httpclient.util.BoundedObjectPool;
+import java.io.IOException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.util.Base64;
+
+/**
+ * 复用已初始化Signature的签名器
+ *
+ * <p>PrivateKeySigner每次签名都会查找算法提供者并执行initSign。本签名器为每个私钥维护一个有界的Signature池，
+ * Signature在sign()之后会回到initSign之后的状态，可直接归还复用。池中对象不与线程绑定，适用于虚拟线程。
+ */
+public class PooledPrivateKeySigner extends PrivateKeySigner {
+
+    /**
+     * 默认池容量
+     */
+    public static final int DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+
+    protected final BoundedObjectPool<Signature> pool;
+
+    public PooledPrivateKeySigner(String serialNumber, PrivateKey privateKey) {
+        this(serialNumber, privateKey, DEFAULT_POOL_SIZE);
+    }
+
+    public PooledPrivateKeySigner(String serialNumber, PrivateKey privateKey, int poolSize) {
+        super(serialNumber, privateKey);
+        this.pool = new BoundedObjectPool<>(this::newSignature, poolSize);
+        // 预热一个实例，同时尽早暴露无效的私钥
+        pool.release(pool.borrow());
+    }
+
+    private Signature newSignature() {
+        try {
+            Signature sign = Signature.getInstance("SHA256withRSA");
+            sign.initSign(privateKey);
+            return sign;
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("当前Java环境不支持SHA256withRSA", e);
+        } catch (InvalidKeyException e) {
+            throw new RuntimeException("无效的私钥", e);
+        }
+    }
+
+    @Override
+    public SignatureResult sign(byte[] message, int offset, int length) {
+        if (signOverridden) {
+            return super.sign(message, offset, length);
+        }
+        SignEvent event = WechatPayEvents.beginSign();
+        Signature sign = pool.borrow();
+        try {
+            sign.update(message, offset, length);
+            String signature = Base64.getEncoder().encodeToString(sign.sign());
+            pool.release(sign);
+            return new SignatureResult(signature, certificateSerialNumber);
+        } catch (SignatureException e) {
+            // 出错的Signature状态未知，不再归还
+            throw new RuntimeException("签名计算失败", e);
+        } finally {
+            commit(event, certificateSerialNumber, length);
+        }
+    }
+
+    @Override
+    public SignatureResult sign(MessageWriter message) throws IOException {
+        if (signOverridden) {
+            return super.sign(message);
+        }
+        SignEvent event = WechatPayEvents.beginSign();
+        Signature sign = pool.borrow();
+        SignatureOutputStream out = new SignatureOutputStream(sign);
+        try {
+            // 写入失败时Signature中残留部分数据，同样不再归还
+            message.writeTo(out);
+            String signature = Base64.getEncoder().encodeToString(sign.sign());
+            pool.release(sign);
+            return new SignatureResult(signature, certificateSerialNumber);
+        } catch (SignatureException e) {
+            throw new RuntimeException("签名计算失败", e);
+        } finally {
+            commit(event, certificateSerialNumber, out.getCount());
+        }
+    }
+
+}
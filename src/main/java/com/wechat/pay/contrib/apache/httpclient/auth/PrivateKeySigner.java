@@ -1,5 +1,8 @@
 package com.wechat.pay.contrib.apache.httpclient.auth;
 
+import com.wechat.pay.contrib.apache.httpclient.jfr.SignEvent;
+import com.wechat.pay.contrib.apache.httpclient.jfr.WechatPayEvents;
+import java.io.IOException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
@@ -14,6 +17,11 @@ public class PrivateKeySigner implements Signer {
 
     protected final String certificateSerialNumber;
     protected final PrivateKey privateKey;
+    /**
+     * 子类重写了sign(byte[])时，带偏移量和流式的签名也经由其实现
+     */
+    final boolean signOverridden = MethodOverrides.isOverridden(getClass(), PrivateKeySigner.class,
+            "sign", byte[].class);
 
     public PrivateKeySigner(String serialNumber, PrivateKey privateKey) {
         this.certificateSerialNumber = serialNumber;
@@ -22,10 +30,49 @@ public class PrivateKeySigner implements Signer {
 
     @Override
     public SignatureResult sign(byte[] message) {
+        // 子类重写后以super.sign调用到这里，直接签名，避免再转回子类的实现
+        return signOverridden ? doSign(message, 0, message.length) : sign(message, 0, message.length);
+    }
+
+    @Override
+    public SignatureResult sign(byte[] message, int offset, int length) {
+        if (signOverridden) {
+            return Signer.super.sign(message, offset, length);
+        }
+        return doSign(message, offset, length);
+    }
+
+    private SignatureResult doSign(byte[] message, int offset, int length) {
+        SignEvent event = WechatPayEvents.beginSign();
+        try {
+            Signature sign = Signature.getInstance("SHA256withRSA");
+            sign.initSign(privateKey);
+            sign.update(message, offset, length);
+            return new SignatureResult(Base64.getEncoder().encodeToString(sign.sign()), certificateSerialNumber);
+
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("当前Java环境不支持SHA256withRSA", e);
+        } catch (SignatureException e) {
+            throw new RuntimeException("签名计算失败", e);
+        } catch (InvalidKeyException e) {
+            throw new RuntimeException("无效的私钥", e);
+        } finally {
+            commit(event, certificateSerialNumber, length);
+        }
+    }
+
+    @Override
+    public SignatureResult sign(MessageWriter message) throws IOException {
+        if (signOverridden) {
+            return Signer.super.sign(message);
+        }
+        SignEvent event = WechatPayEvents.beginSign();
+        SignatureOutputStream out = null;
         try {
             Signature sign = Signature.getInstance("SHA256withRSA");
             sign.initSign(privateKey);
-            sign.update(message);
+            out = new SignatureOutputStream(sign);
+            message.writeTo(out);
             return new SignatureResult(Base64.getEncoder().encodeToString(sign.sign()), certificateSerialNumber);
 
         } catch (NoSuchAlgorithmException e) {
@@ -34,7 +81,19 @@ public class PrivateKeySigner implements Signer {
             throw new RuntimeException("签名计算失败", e);
         } catch (InvalidKeyException e) {
             throw new RuntimeException("无效的私钥", e);
+        } finally {
+            commit(event, certificateSerialNumber, out == null ? 0 : out.getCount());
         }
     }
 
+    /**
+     * 提交签名的JFR事件，未记录事件时event为null
+     */
+    static void commit(SignEvent event, String serialNumber, long messageSize) {
+        if (event != null) {
+            event.serialNumber = serialNumber;
+            event.messageSize = messageSize;
+            event.commit();
+        }
+    }
 }
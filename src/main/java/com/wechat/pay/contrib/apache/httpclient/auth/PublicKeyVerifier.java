@@ -1,35 +1,35 @@
 package com.wechat.pay.contrib.apache.httpclient.auth;
 
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.io.IOException;
 import java.security.PublicKey;
-import java.security.Signature;
-import java.security.SignatureException;
-import java.util.Base64;
 
 public class PublicKeyVerifier implements Verifier {
     protected final PublicKey publicKey;
     protected final String publicKeyId;
+    protected final VerificationEngine engine;
+    /**
+     * 子类重写了verify时，流式验签也经由其实现
+     */
+    private final boolean verifyOverridden = MethodOverrides.isOverridden(getClass(), PublicKeyVerifier.class,
+            "verify", String.class, byte[].class, String.class);
 
     public PublicKeyVerifier(String publicKeyId, PublicKey publicKey) {
         this.publicKey = publicKey;
         this.publicKeyId = publicKeyId;
+        this.engine = new VerificationEngine(publicKey);
     }
 
     @Override
     public boolean verify(String serialNumber, byte[] message, String signature) {
-        try {
-            Signature sign = Signature.getInstance("SHA256withRSA");
-            sign.initVerify(publicKey);
-            sign.update(message);
-            return sign.verify(Base64.getDecoder().decode(signature));
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("当前Java环境不支持SHA256withRSA", e);
-        } catch (SignatureException e) {
-            throw new RuntimeException("签名验证过程发生了错误", e);
-        } catch (InvalidKeyException e) {
-            throw new RuntimeException("无效的证书", e);
+        return engine.verify(message, signature);
+    }
+
+    @Override
+    public boolean verify(String serialNumber, MessageWriter message, String signature) throws IOException {
+        if (verifyOverridden) {
+            return Verifier.super.verify(serialNumber, message, signature);
         }
+        return engine.verify(message, signature);
     }
 
     @Override
@@ -0,0 +1,113 @@
+package com.wechat.pay.contrib.apache.httpclient.auth;
+
+import com.wechat.pay.contrib.apache.httpclient.util.BoundedObjectPool;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 构造签名串的可复用字节缓冲区
+ *
+ * <p>签名串的各部分直接以UTF-8写入同一个字节数组，请求体作为输出流原样写入，
+ * 不再经过中间字符串和先解码再编码的过程。缓冲区从池中借出，用完后归还；超过{@link #MAX_RETAINED_CAPACITY}
+ * 的缓冲区不归还，避免长期占用大块内存。
+ */
+final class SignMessageBuilder extends OutputStream {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int MAX_RETAINED_CAPACITY = 256 * 1024;
+    private static final BoundedObjectPool<SignMessageBuilder> POOL = new BoundedObjectPool<>(
+            SignMessageBuilder::new, Runtime.getRuntime().availableProcessors() * 2);
+
+    private byte[] buf = new byte[DEFAULT_CAPACITY];
+    private int count;
+
+    private SignMessageBuilder() {
+    }
+
+    static SignMessageBuilder acquire() {
+        return POOL.borrow();
+    }
+
+    void release() {
+        if (buf.length <= MAX_RETAINED_CAPACITY) {
+            count = 0;
+            POOL.release(this);
+        }
+    }
+
+    SignMessageBuilder append(String value) {
+        int length = value.length();
+        ensureCapacity(count + length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                // 非ASCII字符，回退为按UTF-8整体编码
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                write(bytes, 0, bytes.length);
+                return this;
+            }
+            buf[count + i] = (byte) c;
+        }
+        count += length;
+        return this;
+    }
+
+    SignMessageBuilder append(long value) {
+        if (value < 0) {
+            return append(Long.toString(value));
+        }
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        ensureCapacity(count + digits);
+        for (int i = count + digits - 1; i >= count; i--) {
+            buf[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        count += digits;
+        return this;
+    }
+
+    SignMessageBuilder newLine() {
+        ensureCapacity(count + 1);
+        buf[count++] = '\n';
+        return this;
+    }
+
+    /**
+     * @return 内部数组，有效内容为[0, length())
+     */
+    byte[] array() {
+        return buf;
+    }
+
+    int length() {
+        return count;
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(count + 1);
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(count + len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(minCapacity, buf.length << 1));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new String(buf, 0, count, StandardCharsets.UTF_8);
+    }
+}
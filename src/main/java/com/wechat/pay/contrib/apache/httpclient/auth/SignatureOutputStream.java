@@ -0,0 +1,46 @@
+package com.wechat.pay.contrib.apache.httpclient.auth;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.Signature;
+import java.security.SignatureException;
+
+/**
+ * 将写入的数据直接用于更新Signature，签名串无需先完整地放入内存
+ */
+class SignatureOutputStream extends OutputStream {
+
+    private final Signature signature;
+    private long count;
+
+    SignatureOutputStream(Signature signature) {
+        this.signature = signature;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        try {
+            signature.update((byte) b);
+            count++;
+        } catch (SignatureException e) {
+            throw new IOException("更新签名数据失败", e);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        try {
+            signature.update(b, off, len);
+            count += len;
+        } catch (SignatureException e) {
+            throw new IOException("更新签名数据失败", e);
+        }
+    }
+
+    /**
+     * @return 已写入的字节数
+     */
+    long getCount() {
+        return count;
+    }
+}
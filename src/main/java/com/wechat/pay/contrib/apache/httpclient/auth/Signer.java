@@ -1,5 +1,8 @@
 package com.wechat.pay.contrib.apache.httpclient.auth;
 
+import java.io.IOException;
+import java.util.Arrays;
+
 /**
  * @author xy-peng
  */
@@ -7,6 +10,38 @@ public interface Signer {
 
     SignatureResult sign(byte[] message);
 
+    /**
+     * 对message[offset, offset + length)签名，用于直接对可复用缓冲区中的签名串签名
+     *
+     * @param message 签名串所在的数组
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 签名结果
+     */
+    default SignatureResult sign(byte[] message, int offset, int length) {
+        if (offset == 0 && length == message.length) {
+            return sign(message);
+        }
+        return sign(Arrays.copyOfRange(message, offset, offset + length));
+    }
+
+    /**
+     * 对写入的签名串签名。默认先将签名串写入缓冲区，支持流式更新的签名器可以重写此方法，边写入边计算签名
+     *
+     * @param message 签名串的写入方式
+     * @return 签名结果
+     * @throws IOException 写入签名串时发生IO错误
+     */
+    default SignatureResult sign(MessageWriter message) throws IOException {
+        SignMessageBuilder buffer = SignMessageBuilder.acquire();
+        try {
+            message.writeTo(buffer);
+            return sign(buffer.array(), 0, buffer.length());
+        } finally {
+            buffer.release();
+        }
+    }
+
     class SignatureResult {
 
         protected final String sign;
@@ -0,0 +1,81 @@
+package com.wechat.pay.contrib.apache.httpclient.auth;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * 多线程下无竞争的随机串生成器
+ *
+ * <p>持有多个互相独立的SecureRandom，线程按线程号选用其中一个，避免所有线程争用同一个实例。
+ * 每次生成只调用一次nextBytes取一批随机字节，每个字节取低6位查表，落在62个字符之外的值丢弃重取，各字符等概率。
+ *
+ * <p>SHA1PRNG的各实例状态独立；默认的NativePRNG在实例之间共用同一个全局锁，分成多个实例也无法消除竞争。
+ * 各实例的种子取自系统的SecureRandom，不会因读取/dev/random而阻塞。
+ */
+public final class StripedNonceGenerator implements NonceGenerator {
+
+    private static final int NONCE_LENGTH = 32;
+    /**
+     * 每字节被接受的概率为62/64，一批48字节足以覆盖绝大多数情况
+     */
+    private static final int DRAW_LENGTH = 48;
+    private static final char[] SYMBOLS = WechatPay2Credentials.SYMBOLS.toCharArray();
+    private static final StripedNonceGenerator DEFAULT = new StripedNonceGenerator(
+            Runtime.getRuntime().availableProcessors() * 2);
+
+    private final SecureRandom[] stripes;
+    private final int mask;
+
+    /**
+     * @param concurrency 预期并发的线程数，实际的实例数取不小于它的2的幂
+     */
+    public StripedNonceGenerator(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("并发数必须大于0");
+        }
+        int size = Integer.highestOneBit(Math.max(1, concurrency - 1)) << 1;
+        SecureRandom seeds = new SecureRandom();
+        stripes = new SecureRandom[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = newRandom(seeds);
+        }
+        mask = size - 1;
+    }
+
+    public static StripedNonceGenerator getDefault() {
+        return DEFAULT;
+    }
+
+    private static SecureRandom newRandom(SecureRandom seeds) {
+        byte[] seed = new byte[32];
+        seeds.nextBytes(seed);
+        try {
+            SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+            // 在第一次取数前设置种子，替代SHA1PRNG默认的自播种
+            random.setSeed(seed);
+            return random;
+        } catch (NoSuchAlgorithmException e) {
+            return new SecureRandom(seed);
+        }
+    }
+
+    @Override
+    public String generateNonce() {
+        SecureRandom random = stripes[(int) Thread.currentThread().getId() & mask];
+        byte[] bytes = new byte[DRAW_LENGTH];
+        char[] nonce = new char[NONCE_LENGTH];
+        int count = 0;
+        while (true) {
+            random.nextBytes(bytes);
+            for (byte b : bytes) {
+                int index = b & 0x3F;
+                if (index < SYMBOLS.length) {
+                    nonce[count++] = SYMBOLS[index];
+                    if (count == NONCE_LENGTH) {
+                        return new String(nonce);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.wechat.pay.contrib.apache.httpclient.auth;
+
+import com.wechat.pay.contrib.apache.httpclient.util.BoundedObjectPool;
+import java.io.IOException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+
+/**
+ * 绑定单个平台证书或微信支付公钥的验签引擎
+ *
+ * <p>缓存已执行initVerify的Signature，Signature在verify()之后会回到initVerify之后的状态，可直接归还复用。
+ * CertificatesVerifier、PublicKeyVerifier以及CertificatesManager的验签器共用此实现。
+ */
+public final class VerificationEngine {
+
+    /**
+     * 默认池容量
+     */
+    public static final int DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+    private static final String ALGORITHM = "SHA256withRSA";
+
+    private final X509Certificate certificate;
+    private final PublicKey publicKey;
+    private final BoundedObjectPool<Signature> pool;
+
+    public VerificationEngine(X509Certificate certificate) {
+        this(certificate, null, DEFAULT_POOL_SIZE);
+    }
+
+    public VerificationEngine(PublicKey publicKey) {
+        this(null, publicKey, DEFAULT_POOL_SIZE);
+    }
+
+    private VerificationEngine(X509Certificate certificate, PublicKey publicKey, int poolSize) {
+        if (certificate == null && publicKey == null) {
+            throw new IllegalArgumentException("证书和公钥不能同时为空");
+        }
+        this.certificate = certificate;
+        this.publicKey = certificate != null ? certificate.getPublicKey() : publicKey;
+        this.pool = new BoundedObjectPool<>(this::newSignature, poolSize);
+    }
+
+    private Signature newSignature() {
+        try {
+            Signature sign = Signature.getInstance(ALGORITHM);
+            if (certificate != null) {
+                sign.initVerify(certificate);
+            } else {
+                sign.initVerify(publicKey);
+            }
+            return sign;
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("当前Java环境不支持SHA256withRSA", e);
+        } catch (InvalidKeyException e) {
+            throw new RuntimeException("无效的证书", e);
+        }
+    }
+
+    /**
+     * 验证签名
+     *
+     * @param message 验签的原文
+     * @param signature Base64编码的签名
+     * @return 验证是否通过
+     */
+    public boolean verify(byte[] message, String signature) {
+        byte[] signatureBytes = Base64.getDecoder().decode(signature);
+        Signature sign = pool.borrow();
+        try {
+            sign.update(message);
+            boolean result = sign.verify(signatureBytes);
+            pool.release(sign);
+            return result;
+        } catch (SignatureException e) {
+            // 出错的Signature状态未知，不再归还
+            throw new RuntimeException("签名验证过程发生了错误", e);
+        }
+    }
+
+    /**
+     * 验证写入的原文的签名，原文直接用于更新Signature，不在内存中保留
+     *
+     * @param message 验签原文的写入方式
+     * @param signature Base64编码的签名
+     * @return 验证是否通过
+     * @throws IOException 写入原文时发生IO错误
+     */
+    public boolean verify(MessageWriter message, String signature) throws IOException {
+        byte[] signatureBytes = Base64.getDecoder().decode(signature);
+        Signature sign = pool.borrow();
+        try {
+            // 写入失败时Signature中残留部分数据，不再归还
+            message.writeTo(new SignatureOutputStream(sign));
+            boolean result = sign.verify(signatureBytes);
+            pool.release(sign);
+            return result;
+        } catch (SignatureException e) {
+            throw new RuntimeException("签名验证过程发生了错误", e);
+        }
+    }
+
+    /**
+     * @return 绑定的平台证书，使用微信支付公钥构造时为null
+     */
+    public X509Certificate getCertificate() {
+        return certificate;
+    }
+
+    public PublicKey getPublicKey() {
+        return publicKey;
+    }
+}
@@ -1,5 +1,7 @@
 package com.wechat.pay.contrib.apache.httpclient.auth;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.security.PublicKey;
 
 /**
@@ -14,6 +16,21 @@ public interface Verifier {
      */
     boolean verify(String serialNumber, byte[] message, String signature);
 
+    /**
+     * 验证写入的原文的签名。默认先将原文写入缓冲区，支持流式验签的验签器可以重写此方法，边写入边验签
+     *
+     * @param serialNumber 微信支付序列号（微信支付公钥ID 或 平台证书序列号）
+     * @param message 验签原文的写入方式
+     * @param signature 验签的签名
+     * @return 验证是否通过
+     * @throws IOException 写入原文时发生IO错误
+     */
+    default boolean verify(String serialNumber, MessageWriter message, String signature) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.writeTo(out);
+        return verify(serialNumber, out.toByteArray(), signature);
+    }
+
     /**
      * 获取合法的公钥，针对不同的验签模式有所区别
      * <ul>
@@ -24,6 +41,17 @@ public interface Verifier {
      */
     PublicKey getValidPublicKey();
 
+    /**
+     * 是否持有序列号对应的平台证书或微信支付公钥，用于在验签失败时区分原因。
+     * 默认返回true，即无法区分时视为签名不符
+     *
+     * @param serialNumber 微信支付序列号（微信支付公钥ID 或 平台证书序列号）
+     * @return 是否持有对应的证书或公钥
+     */
+    default boolean containsSerialNumber(String serialNumber) {
+        return true;
+    }
+
 
     /**
      * 获取微信支付序列号，针对不同的验签模式有所区别：
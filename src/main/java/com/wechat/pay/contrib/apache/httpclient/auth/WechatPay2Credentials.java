@@ -2,10 +2,14 @@ package com.wechat.pay.contrib.apache.httpclient.auth;
 
 import com.wechat.pay.contrib.apache.httpclient.Credentials;
 import com.wechat.pay.contrib.apache.httpclient.WechatPayUploadHttpPost;
+import com.wechat.pay.contrib.apache.httpclient.util.CachedEpochClock;
+import com.wechat.pay.contrib.apache.httpclient.util.EpochClock;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.client.methods.HttpRequestWrapper;
 import org.apache.http.util.EntityUtils;
@@ -21,12 +25,47 @@ public class WechatPay2Credentials implements Credentials {
 
     protected static final String SYMBOLS = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
     protected static final SecureRandom RANDOM = new SecureRandom();
+    /**
+     * Authorization中字段名、引号、分隔符和时间戳所需的长度
+     */
+    private static final int TOKEN_RESERVED_LENGTH = 80;
     protected final String merchantId;
     protected final Signer signer;
+    private final NonceGenerator nonceGenerator;
+    private final EpochClock clock;
+    /**
+     * 子类重写了buildMessage时，仍使用其返回的签名串
+     */
+    private final boolean buildMessageOverridden;
 
     public WechatPay2Credentials(String merchantId, Signer signer) {
+        this(merchantId, signer, StripedNonceGenerator.getDefault());
+    }
+
+    /**
+     * @param nonceGenerator 随机串生成器，默认使用{@link StripedNonceGenerator#getDefault()}
+     */
+    public WechatPay2Credentials(String merchantId, Signer signer, NonceGenerator nonceGenerator) {
+        this(merchantId, signer, nonceGenerator, EpochClock.system());
+    }
+
+    /**
+     * @param nonceGenerator 随机串生成器
+     * @param clock 生成签名时间戳所用的时钟，热点路径可使用{@link CachedEpochClock#getInstance()}
+     */
+    public WechatPay2Credentials(String merchantId, Signer signer, NonceGenerator nonceGenerator, EpochClock clock) {
+        if (nonceGenerator == null) {
+            throw new IllegalArgumentException("nonceGenerator为空");
+        }
+        if (clock == null) {
+            throw new IllegalArgumentException("clock为空");
+        }
         this.merchantId = merchantId;
         this.signer = signer;
+        this.nonceGenerator = nonceGenerator;
+        this.clock = clock;
+        this.buildMessageOverridden = MethodOverrides.isOverridden(getClass(), WechatPay2Credentials.class,
+                "buildMessage", String.class, long.class, HttpRequestWrapper.class);
     }
 
     public String getMerchantId() {
@@ -34,15 +73,11 @@ public class WechatPay2Credentials implements Credentials {
     }
 
     protected long generateTimestamp() {
-        return System.currentTimeMillis() / 1000;
+        return clock.currentEpochSeconds();
     }
 
     protected String generateNonceStr() {
-        char[] nonceChars = new char[32];
-        for (int index = 0; index < nonceChars.length; ++index) {
-            nonceChars[index] = SYMBOLS.charAt(RANDOM.nextInt(SYMBOLS.length()));
-        }
-        return new String(nonceChars);
+        return nonceGenerator.generateNonce();
     }
 
     @Override
@@ -55,21 +90,75 @@ public class WechatPay2Credentials implements Credentials {
         String nonceStr = generateNonceStr();
         long timestamp = generateTimestamp();
 
-        String message = buildMessage(nonceStr, timestamp, request);
-        log.debug("authorization message=[{}]", message);
-
-        Signer.SignatureResult signature = signer.sign(message.getBytes(StandardCharsets.UTF_8));
+        Signer.SignatureResult signature;
+        if (buildMessageOverridden) {
+            String message = buildMessage(nonceStr, timestamp, request);
+            log.debug("authorization message=[{}]", message);
+            signature = signer.sign(message.getBytes(StandardCharsets.UTF_8));
+        } else if (log.isDebugEnabled()) {
+            SignMessageBuilder message = SignMessageBuilder.acquire();
+            try {
+                writeMessage(message, nonceStr, timestamp, request);
+                log.debug("authorization message=[{}]", message);
+                signature = signer.sign(message.array(), 0, message.length());
+            } finally {
+                message.release();
+            }
+        } else {
+            // 请求体直接写入签名器，不再额外缓存完整的签名串
+            signature = signer.sign(out -> writeMessage(out, nonceStr, timestamp, request));
+        }
 
-        String token = "mchid=\"" + getMerchantId() + "\","
-                + "nonce_str=\"" + nonceStr + "\","
-                + "timestamp=\"" + timestamp + "\","
-                + "serial_no=\"" + signature.certificateSerialNumber + "\","
-                + "signature=\"" + signature.sign + "\"";
-        log.debug("authorization token=[{}]", token);
+        String token = new StringBuilder(TOKEN_RESERVED_LENGTH + getMerchantId().length() + nonceStr.length()
+                + signature.certificateSerialNumber.length() + signature.sign.length())
+                .append("mchid=\"").append(getMerchantId()).append("\",")
+                .append("nonce_str=\"").append(nonceStr).append("\",")
+                .append("timestamp=\"").append(timestamp).append("\",")
+                .append("serial_no=\"").append(signature.certificateSerialNumber).append("\",")
+                .append("signature=\"").append(signature.sign).append("\"")
+                .toString();
+        if (log.isDebugEnabled()) {
+            log.debug("authorization token=[{}]", token);
+        }
 
         return token;
     }
 
+    /**
+     * 将签名串写入输出流，结果与{@link #buildMessage(String, long, HttpRequestWrapper)}相同。请求体通过
+     * {@link HttpEntity#writeTo(OutputStream)}原样写入
+     */
+    private void writeMessage(OutputStream out, String nonce, long timestamp, HttpRequestWrapper request)
+            throws IOException {
+        URI uri = request.getURI();
+        SignMessageBuilder header = SignMessageBuilder.acquire();
+        try {
+            header.append(request.getRequestLine().getMethod()).newLine();
+            header.append(uri.getRawPath());
+            if (uri.getQuery() != null) {
+                header.append("?").append(uri.getRawQuery());
+            }
+            header.newLine()
+                    .append(timestamp).newLine()
+                    .append(nonce).newLine();
+            // PATCH,POST,PUT
+            if (request.getOriginal() instanceof WechatPayUploadHttpPost) {
+                header.append(String.valueOf(((WechatPayUploadHttpPost) request.getOriginal()).getMeta()));
+            }
+            out.write(header.array(), 0, header.length());
+        } finally {
+            header.release();
+        }
+        if (!(request.getOriginal() instanceof WechatPayUploadHttpPost)
+                && request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity != null) {
+                entity.writeTo(out);
+            }
+        }
+        out.write('\n');
+    }
+
     protected String buildMessage(String nonce, long timestamp, HttpRequestWrapper request) throws IOException {
         URI uri = request.getURI();
         String canonicalUrl = uri.getRawPath();
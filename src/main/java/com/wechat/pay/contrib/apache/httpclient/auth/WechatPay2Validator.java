@@ -8,11 +8,13 @@ import static com.wechat.pay.contrib.apache.httpclient.constant.WechatPayHttpHea
 import static com.wechat.pay.contrib.apache.httpclient.constant.WechatPayHttpHeaders.WECHAT_PAY_TIMESTAMP;
 
 import com.wechat.pay.contrib.apache.httpclient.Validator;
+import com.wechat.pay.contrib.apache.httpclient.jfr.VerifyEvent;
+import com.wechat.pay.contrib.apache.httpclient.jfr.WechatPayEvents;
+import com.wechat.pay.contrib.apache.httpclient.metrics.ValidationFailure;
+import com.wechat.pay.contrib.apache.httpclient.util.EpochClock;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.time.DateTimeException;
-import java.time.Duration;
-import java.time.Instant;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -30,10 +32,23 @@ public class WechatPay2Validator implements Validator {
      * 应答超时时间，单位为分钟
      */
     protected static final long RESPONSE_EXPIRED_MINUTES = 5;
+    private static final long RESPONSE_EXPIRED_SECONDS = TimeUnit.MINUTES.toSeconds(RESPONSE_EXPIRED_MINUTES);
     protected final Verifier verifier;
+    private final EpochClock clock;
 
     public WechatPay2Validator(Verifier verifier) {
+        this(verifier, EpochClock.system());
+    }
+
+    /**
+     * @param clock 检查应答时间戳是否过期所用的时钟
+     */
+    public WechatPay2Validator(Verifier verifier, EpochClock clock) {
+        if (clock == null) {
+            throw new IllegalArgumentException("clock为空");
+        }
         this.verifier = verifier;
+        this.clock = clock;
     }
 
     protected static IllegalArgumentException parameterError(String message, Object... args) {
@@ -48,23 +63,57 @@ public class WechatPay2Validator implements Validator {
 
     @Override
     public final boolean validate(CloseableHttpResponse response) throws IOException {
-        try {
-            validateParameters(response);
+        return diagnose(response) == null;
+    }
 
-            String message = buildMessage(response);
-            String serial = response.getFirstHeader(WECHAT_PAY_SERIAL).getValue();
-            String signature = response.getFirstHeader(WECHAT_PAY_SIGNATURE).getValue();
+    @Override
+    public final ValidationFailure diagnose(CloseableHttpResponse response) throws IOException {
+        VerifyEvent event = WechatPayEvents.beginVerify();
+        if (event == null) {
+            return check(response);
+        }
+        String outcome = "IO_ERROR";
+        try {
+            ValidationFailure failure = check(response);
+            outcome = failure == null ? "" : failure.name();
+            return failure;
+        } finally {
+            Header requestId = response.getFirstHeader(REQUEST_ID);
+            Header serial = response.getFirstHeader(WECHAT_PAY_SERIAL);
+            HttpEntity entity = response.getEntity();
+            event.requestId = requestId == null ? null : requestId.getValue();
+            event.serialNumber = serial == null ? null : serial.getValue();
+            event.bodySize = entity == null ? 0 : entity.getContentLength();
+            event.failure = outcome;
+            event.commit();
+        }
+    }
 
-            if (!verifier.verify(serial, message.getBytes(StandardCharsets.UTF_8), signature)) {
-                throw verifyFail("serial=[%s] message=[%s] sign=[%s], request-id=[%s]",
-                        serial, message, signature, response.getFirstHeader(REQUEST_ID).getValue());
-            }
+    private ValidationFailure check(CloseableHttpResponse response) throws IOException {
+        long responseTime;
+        try {
+            responseTime = requireParameters(response);
         } catch (IllegalArgumentException e) {
             log.warn(e.getMessage());
-            return false;
+            return ValidationFailure.INVALID_HEADER;
         }
+        if (clock.isExpired(responseTime, RESPONSE_EXPIRED_SECONDS)) {
+            log.warn(expired(response).getMessage());
+            return ValidationFailure.EXPIRED;
+        }
+
+        String serial = response.getFirstHeader(WECHAT_PAY_SERIAL).getValue();
+        String signature = response.getFirstHeader(WECHAT_PAY_SIGNATURE).getValue();
 
-        return true;
+        // 应答体以原始字节直接写入验签器，不再转换为字符串
+        if (!verifier.verify(serial, out -> writeMessage(out, response), signature)) {
+            log.warn(verifyFail("serial=[%s] message=[%s] sign=[%s], request-id=[%s]",
+                    serial, buildMessage(response), signature, response.getFirstHeader(REQUEST_ID).getValue())
+                    .getMessage());
+            return verifier.containsSerialNumber(serial)
+                    ? ValidationFailure.SIGNATURE_MISMATCH : ValidationFailure.UNKNOWN_SERIAL;
+        }
+        return null;
     }
 
     @Override
@@ -73,6 +122,19 @@ public class WechatPay2Validator implements Validator {
     }
 
     protected final void validateParameters(CloseableHttpResponse response) {
+        long responseTime = requireParameters(response);
+        // 拒绝过期应答
+        if (clock.isExpired(responseTime, RESPONSE_EXPIRED_SECONDS)) {
+            throw expired(response);
+        }
+    }
+
+    /**
+     * 检查验签所需的应答头是否齐全
+     *
+     * @return 应答时间戳
+     */
+    private static long requireParameters(CloseableHttpResponse response) {
         Header firstHeader = response.getFirstHeader(REQUEST_ID);
         if (firstHeader == null) {
             throw parameterError("empty " + REQUEST_ID);
@@ -92,16 +154,34 @@ public class WechatPay2Validator implements Validator {
 
         String timestampStr = header.getValue();
         try {
-            Instant responseTime = Instant.ofEpochSecond(Long.parseLong(timestampStr));
-            // 拒绝过期应答
-            if (Duration.between(responseTime, Instant.now()).abs().toMinutes() >= RESPONSE_EXPIRED_MINUTES) {
-                throw parameterError("timestamp=[%s] expires, request-id=[%s]", timestampStr, requestId);
-            }
-        } catch (DateTimeException | NumberFormatException e) {
+            return Long.parseLong(timestampStr);
+        } catch (NumberFormatException e) {
             throw parameterError("invalid timestamp=[%s], request-id=[%s]", timestampStr, requestId);
         }
     }
 
+    private static IllegalArgumentException expired(CloseableHttpResponse response) {
+        return parameterError("timestamp=[%s] expires, request-id=[%s]",
+                response.getFirstHeader(WECHAT_PAY_TIMESTAMP).getValue(),
+                response.getFirstHeader(REQUEST_ID).getValue());
+    }
+
+    private void writeMessage(OutputStream out, CloseableHttpResponse response) throws IOException {
+        SignMessageBuilder header = SignMessageBuilder.acquire();
+        try {
+            header.append(response.getFirstHeader(WECHAT_PAY_TIMESTAMP).getValue()).newLine()
+                    .append(response.getFirstHeader(WECHAT_PAY_NONCE).getValue()).newLine();
+            out.write(header.array(), 0, header.length());
+        } finally {
+            header.release();
+        }
+        HttpEntity entity = response.getEntity();
+        if (entity != null && entity.isRepeatable()) {
+            entity.writeTo(out);
+        }
+        out.write('\n');
+    }
+
     protected final String buildMessage(CloseableHttpResponse response) throws IOException {
         String timestamp = response.getFirstHeader(WECHAT_PAY_TIMESTAMP).getValue();
         String nonce = response.getFirstHeader(WECHAT_PAY_NONCE).getValue();
@@ -115,5 +195,4 @@ public class WechatPay2Validator implements Validator {
         HttpEntity entity = response.getEntity();
         return (entity != null && entity.isRepeatable()) ? EntityUtils.toString(entity) : "";
     }
-
 }
@@ -0,0 +1,108 @@
+package com.wechat.pay.contrib.apache.httpclient.cert;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 多商户批量操作（如批量更新平台证书）的执行结果
+ */
+public class BatchResult {
+
+    private final Instant startTime;
+    private final Duration elapsed;
+    private final Set<String> succeeded;
+    private final Map<String, Throwable> failures;
+    private final Map<String, Duration> durations;
+
+    private BatchResult(Instant startTime, Duration elapsed, Set<String> succeeded, Map<String, Throwable> failures,
+            Map<String, Duration> durations) {
+        this.startTime = startTime;
+        this.elapsed = elapsed;
+        this.succeeded = Collections.unmodifiableSet(succeeded);
+        this.failures = Collections.unmodifiableMap(failures);
+        this.durations = Collections.unmodifiableMap(durations);
+    }
+
+    public Instant getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return 批量操作的总耗时
+     */
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return 执行成功的商户号
+     */
+    public Set<String> getSucceeded() {
+        return succeeded;
+    }
+
+    /**
+     * @return 执行失败的商户号及对应的异常
+     */
+    public Map<String, Throwable> getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return 每个商户的耗时
+     */
+    public Map<String, Duration> getDurations() {
+        return durations;
+    }
+
+    public int getTotal() {
+        return succeeded.size() + failures.size();
+    }
+
+    public boolean isAllSucceeded() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "startTime=" + startTime +
+                ", elapsed=" + elapsed +
+                ", succeeded=" + succeeded.size() +
+                ", failed=" + failures.keySet() +
+                '}';
+    }
+
+    /**
+     * 在多个线程中收集每个商户的执行结果
+     */
+    static class Collector {
+
+        private final Instant startTime = Instant.now();
+        private final long startNanos = System.nanoTime();
+        private final Set<String> succeeded = ConcurrentHashMap.newKeySet();
+        private final Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        private final Map<String, Duration> durations = new ConcurrentHashMap<>();
+
+        void recordSuccess(String merchantId, Duration duration) {
+            succeeded.add(merchantId);
+            durations.put(merchantId, duration);
+        }
+
+        void recordFailure(String merchantId, Duration duration, Throwable cause) {
+            failures.put(merchantId, cause);
+            durations.put(merchantId, duration);
+        }
+
+        BatchResult finish() {
+            return new BatchResult(startTime, Duration.ofNanos(System.nanoTime() - startNanos),
+                    new HashSet<>(succeeded), new HashMap<>(failures), new HashMap<>(durations));
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.wechat.pay.contrib.apache.httpclient.cert;
+
+import java.io.IOException;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+
+/**
+ * 平台证书的本地缓存，用于在服务启动时跳过首次证书下载
+ *
+ * @see FileCertificateCache
+ * @see CertificatesManager#setCertificateCache(CertificateCache)
+ */
+public interface CertificateCache {
+
+    /**
+     * 读取商户缓存的平台证书
+     *
+     * @param merchantId 商户号
+     * @param apiV3Key APIv3密钥
+     * @return 缓存中仍在有效期内的证书，缓存不存在或校验失败时返回空集合
+     * @throws IOException 读取缓存失败
+     */
+    Collection<X509Certificate> load(String merchantId, byte[] apiV3Key) throws IOException;
+
+    /**
+     * 保存商户的平台证书，覆盖原有缓存
+     *
+     * @param merchantId 商户号
+     * @param apiV3Key APIv3密钥
+     * @param certificates 平台证书
+     * @throws IOException 写入缓存失败
+     */
+    void store(String merchantId, byte[] apiV3Key, Collection<X509Certificate> certificates) throws IOException;
+}
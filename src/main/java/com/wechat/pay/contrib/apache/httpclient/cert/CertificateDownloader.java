@@ -0,0 +1,157 @@
+package com.wechat.pay.contrib.apache.httpclient.cert;
+
+import static org.apache.http.HttpHeaders.ACCEPT;
+import static org.apache.http.HttpStatus.SC_OK;
+import static org.apache.http.entity.ContentType.APPLICATION_JSON;
+
+import com.wechat.pay.contrib.apache.httpclient.Credentials;
+import com.wechat.pay.contrib.apache.httpclient.Validator;
+import com.wechat.pay.contrib.apache.httpclient.WechatPayHttpClientBuilder;
+import com.wechat.pay.contrib.apache.httpclient.exception.HttpCodeException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 平台证书下载器
+ *
+ * <p>所有商户的证书下载共用同一个连接池，连接保持长连接并在下载之间复用，避免每次下载都重新建立TCP和TLS连接。
+ * 每次下载仍使用对应商户的认证器和验证器，连接池在{@link #close()}时关闭。
+ */
+public class CertificateDownloader implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(CertificateDownloader.class);
+    /**
+     * 证书下载地址
+     */
+    private static final String CERT_DOWNLOAD_PATH = "https://api.mch.weixin.qq.com/v3/certificates";
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final RequestConfig requestConfig;
+    private final long idleTimeoutMillis;
+
+    protected CertificateDownloader(Builder builder) {
+        this.connectionManager = new PoolingHttpClientConnectionManager(builder.connectionTimeToLiveMillis,
+                TimeUnit.MILLISECONDS);
+        this.connectionManager.setMaxTotal(builder.maxConnections);
+        this.connectionManager.setDefaultMaxPerRoute(builder.maxConnections);
+        this.requestConfig = RequestConfig.custom()
+                .setConnectTimeout(builder.connectTimeoutMillis)
+                .setSocketTimeout(builder.socketTimeoutMillis)
+                .setConnectionRequestTimeout(builder.connectionRequestTimeoutMillis)
+                .build();
+        this.idleTimeoutMillis = builder.idleTimeoutMillis;
+    }
+
+    /**
+     * 下载平台证书
+     *
+     * @param credentials 认证器
+     * @param validator 验证器
+     * @param proxy 代理，可以为null
+     * @return 下载证书的应答体
+     * @throws HttpCodeException Http返回码异常
+     * @throws IOException IO异常
+     */
+    public String download(Credentials credentials, Validator validator, HttpHost proxy)
+            throws HttpCodeException, IOException {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+        try (CloseableHttpClient httpClient = WechatPayHttpClientBuilder.create()
+                .withCredentials(credentials)
+                .withValidator(validator)
+                .withProxy(proxy)
+                .setConnectionManager(connectionManager)
+                .setConnectionManagerShared(true)
+                .setDefaultRequestConfig(requestConfig)
+                .build()) {
+            HttpGet httpGet = new HttpGet(CERT_DOWNLOAD_PATH);
+            httpGet.addHeader(ACCEPT, APPLICATION_JSON.toString());
+            try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
+                int statusCode = response.getStatusLine().getStatusCode();
+                String body = EntityUtils.toString(response.getEntity());
+                if (statusCode != SC_OK) {
+                    log.error("Download cert failed, statusCode = {}, body = {}", statusCode, body);
+                    throw new HttpCodeException("下载平台证书返回状态码异常，状态码为:" + statusCode);
+                }
+                return body;
+            }
+        }
+    }
+
+    /**
+     * 关闭连接池，关闭后无法再下载证书
+     */
+    @Override
+    public void close() {
+        connectionManager.shutdown();
+    }
+
+    public static class Builder {
+
+        private int connectTimeoutMillis = 10_000;
+        private int socketTimeoutMillis = 30_000;
+        private int connectionRequestTimeoutMillis = 10_000;
+        private int maxConnections = 20;
+        private long idleTimeoutMillis = TimeUnit.MINUTES.toMillis(1);
+        private long connectionTimeToLiveMillis = TimeUnit.MINUTES.toMillis(10);
+
+        public Builder withConnectTimeout(int connectTimeoutMillis) {
+            this.connectTimeoutMillis = connectTimeoutMillis;
+            return this;
+        }
+
+        public Builder withSocketTimeout(int socketTimeoutMillis) {
+            this.socketTimeoutMillis = socketTimeoutMillis;
+            return this;
+        }
+
+        public Builder withConnectionRequestTimeout(int connectionRequestTimeoutMillis) {
+            this.connectionRequestTimeoutMillis = connectionRequestTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * @param maxConnections 连接池的最大连接数
+         * @return builder
+         */
+        public Builder withMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        /**
+         * @param idleTimeoutMillis 空闲连接在下一次下载前被关闭的空闲时长
+         * @return builder
+         */
+        public Builder withIdleTimeout(long idleTimeoutMillis) {
+            this.idleTimeoutMillis = idleTimeoutMillis;
+            return this;
+        }
+
+        /**
+         * @param connectionTimeToLiveMillis 连接的最长存活时间
+         * @return builder
+         */
+        public Builder withConnectionTimeToLive(long connectionTimeToLiveMillis) {
+            this.connectionTimeToLiveMillis = connectionTimeToLiveMillis;
+            return this;
+        }
+
+        public CertificateDownloader build() {
+            if (maxConnections <= 0) {
+                throw new IllegalArgumentException("maxConnections必须大于0");
+            }
+            return new CertificateDownloader(this);
+        }
+    }
+}
@@ -1,42 +1,54 @@
 package com.wechat.pay.contrib.apache.httpclient.cert;
 
-import static org.apache.http.HttpHeaders.ACCEPT;
-import static org.apache.http.HttpStatus.SC_OK;
-import static org.apache.http.entity.ContentType.APPLICATION_JSON;
-
 import com.wechat.pay.contrib.apache.httpclient.Credentials;
 import com.wechat.pay.contrib.apache.httpclient.Validator;
-import com.wechat.pay.contrib.apache.httpclient.WechatPayHttpClientBuilder;
+import com.wechat.pay.contrib.apache.httpclient.auth.CertificateIndex;
+import com.wechat.pay.contrib.apache.httpclient.auth.CertificateStore;
+import com.wechat.pay.contrib.apache.httpclient.auth.MessageWriter;
+import com.wechat.pay.contrib.apache.httpclient.auth.VerificationEngine;
 import com.wechat.pay.contrib.apache.httpclient.auth.Verifier;
 import com.wechat.pay.contrib.apache.httpclient.auth.WechatPay2Validator;
 import com.wechat.pay.contrib.apache.httpclient.exception.HttpCodeException;
 import com.wechat.pay.contrib.apache.httpclient.exception.NotFoundException;
+import com.wechat.pay.contrib.apache.httpclient.jfr.CertificateRefreshEvent;
+import com.wechat.pay.contrib.apache.httpclient.jfr.WechatPayEvents;
+import com.wechat.pay.contrib.apache.httpclient.metrics.MetricsListener;
 import com.wechat.pay.contrib.apache.httpclient.proxy.HttpProxyFactory;
 import com.wechat.pay.contrib.apache.httpclient.util.CertSerializeUtil;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.math.BigInteger;
 import java.security.GeneralSecurityException;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
-import java.security.Signature;
-import java.security.SignatureException;
-import java.security.cert.CertificateExpiredException;
-import java.security.cert.CertificateNotYetValidException;
 import java.security.cert.X509Certificate;
+import java.time.Duration;
 import java.time.Instant;
-import java.util.Base64;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import org.apache.http.HttpHost;
 import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,26 +61,63 @@ import org.slf4j.LoggerFactory;
 public class CertificatesManager {
 
     protected static final int UPDATE_INTERVAL_MINUTE = 1440;
-    private static final Logger log = LoggerFactory.getLogger(CertificatesManager.class);
     /**
-     * 证书下载地址
+     * 默认同时更新平台证书的商户数
      */
-    private static final String CERT_DOWNLOAD_PATH = "https://api.mch.weixin.qq.com/v3/certificates";
+    protected static final int DEFAULT_REFRESH_CONCURRENCY = 4;
+    private static final Logger log = LoggerFactory.getLogger(CertificatesManager.class);
     private static final String SCHEDULE_UPDATE_CERT_THREAD_NAME = "scheduled_update_cert_thread";
+    private static final String REFRESH_CERT_WORKER_THREAD_NAME = "refresh_cert_worker_";
+    private static final String PUT_MERCHANT_WORKER_THREAD_NAME = "put_merchant_worker_";
     private volatile static CertificatesManager instance = null;
     private ConcurrentHashMap<String, byte[]> apiV3Keys = new ConcurrentHashMap<>();
 
     private HttpProxyFactory proxyFactory;
     private HttpHost proxy;
+    /**
+     * 所有商户共用的证书下载器
+     */
+    private volatile CertificateDownloader downloader = new CertificateDownloader.Builder().build();
+    /**
+     * 平台证书的本地缓存，可以为null
+     */
+    private volatile CertificateCache certificateCache;
+    private volatile MetricsListener metrics = MetricsListener.NOOP;
 
-    private ConcurrentHashMap<String, ConcurrentHashMap<BigInteger, X509Certificate>> certificates =
-            new ConcurrentHashMap<>();
+    private ConcurrentHashMap<String, CertificateStore> certificates = new ConcurrentHashMap<>();
 
     private ConcurrentHashMap<String, Credentials> credentialsMap = new ConcurrentHashMap<>();
     /**
      * 执行定时更新平台证书的线程池
      */
-    private ScheduledExecutorService executor;
+    private volatile ScheduledExecutorService executor;
+    /**
+     * 并行下载各商户平台证书的工作线程池
+     */
+    private ThreadPoolExecutor refreshWorkers;
+    /**
+     * 执行商户注册的工作线程池，与更新证书的线程池分开，注册不必排在整批更新任务之后
+     */
+    private ThreadPoolExecutor registrationWorkers;
+    private int refreshConcurrency = DEFAULT_REFRESH_CONCURRENCY;
+    /**
+     * 是否已调用{@link #stop()}，停止后不再创建工作线程池
+     */
+    private boolean stopped;
+    /**
+     * 证书下载的全局并发上限，更新证书、注册商户和批量注册共用。公平模式下等待中的注册与更新按到达顺序获得许可
+     */
+    private volatile Semaphore downloadPermits = new Semaphore(DEFAULT_REFRESH_CONCURRENCY, true);
+    private volatile DownloadRateLimiter rateLimiter = new DownloadRateLimiter(0);
+    /**
+     * 商户级别的锁，保证同一商户的证书不会被并发下载和更新
+     */
+    private final ConcurrentHashMap<String, ReentrantLock> merchantLocks = new ConcurrentHashMap<>();
+    private volatile BatchResult lastRefreshResult;
+    /**
+     * 正在进行中的商户注册，用于合并同一商户以相同参数发起的并发注册
+     */
+    private final ConcurrentHashMap<String, PendingRegistration> pendingRegistrations = new ConcurrentHashMap<>();
 
     private static final Validator emptyValidator =
             new Validator() {
@@ -98,7 +147,7 @@ public class CertificatesManager {
     }
 
     /**
-     * 增加需要自动更新平台证书的商户信息
+     * 增加需要自动更新平台证书的商户信息，在调用线程上下载首批平台证书，{@link #stop()}之后仍可调用
      *
      * @param merchantId 商户号
      * @param credentials 认证器
@@ -107,28 +156,226 @@ public class CertificatesManager {
      * @throws GeneralSecurityException 通用安全错误
      * @throws HttpCodeException HttpCode错误
      */
-    public synchronized void putMerchant(String merchantId, Credentials credentials, byte[] apiV3Key)
+    public void putMerchant(String merchantId, Credentials credentials, byte[] apiV3Key)
             throws IOException, GeneralSecurityException, HttpCodeException {
+        CompletableFuture<Verifier> future = putMerchantAsync(merchantId, credentials, apiV3Key, Runnable::run);
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待平台证书下载时被中断，merchantId:" + merchantId);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof GeneralSecurityException) {
+                throw (GeneralSecurityException) cause;
+            }
+            if (cause instanceof HttpCodeException) {
+                throw (HttpCodeException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * 异步增加需要自动更新平台证书的商户信息，在注册专用的工作线程池中下载首批平台证书。
+     * 该线程池在{@link #stop()}时关闭，之后返回的Future以{@link RejectedExecutionException}失败
+     *
+     * @param merchantId 商户号
+     * @param credentials 认证器
+     * @param apiV3Key APIv3密钥
+     * @return 首批证书下载完成后得到该商户的验签器，下载失败时以对应异常完成
+     * @see #putMerchantAsync(String, Credentials, byte[], Executor)
+     */
+    public CompletableFuture<Verifier> putMerchantAsync(String merchantId, Credentials credentials,
+            byte[] apiV3Key) {
+        // 提交时才取线程池，停止后的拒绝以失败的Future返回
+        return putMerchantAsync(merchantId, credentials, apiV3Key, command -> registrationWorkers().execute(command));
+    }
+
+    /**
+     * 异步增加需要自动更新平台证书的商户信息
+     *
+     * <p>同一商户号同时只会有一次注册在进行。注册完成前以相同的认证器和APIv3密钥重复调用时直接返回进行中的Future，
+     * 不会重复下载证书；认证器或密钥不同时，新的注册排在进行中的注册之后执行，最终保存后一次调用的参数。
+     * 各商户的注册互不阻塞，可以在服务启动时并行注册所有商户。
+     *
+     * @param merchantId 商户号
+     * @param credentials 认证器
+     * @param apiV3Key APIv3密钥
+     * @param executor 执行证书下载的线程池
+     * @return 首批证书下载完成后得到该商户的验签器，下载失败时以对应异常完成
+     */
+    public CompletableFuture<Verifier> putMerchantAsync(String merchantId, Credentials credentials,
+            byte[] apiV3Key, Executor executor) {
         if (merchantId == null || merchantId.isEmpty()) {
             throw new IllegalArgumentException("merchantId为空");
         }
         if (credentials == null) {
             throw new IllegalArgumentException("credentials为空");
         }
-        if (apiV3Key.length == 0) {
+        if (apiV3Key == null || apiV3Key.length == 0) {
             throw new IllegalArgumentException("apiV3Key为空");
         }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor为空");
+        }
+        PendingRegistration registration = new PendingRegistration(credentials, apiV3Key);
+        PendingRegistration pending = pendingRegistrations.putIfAbsent(merchantId, registration);
+        if (pending != null) {
+            if (pending.matches(credentials, apiV3Key)) {
+                return pending.future;
+            }
+            // 认证器或密钥已更换，等进行中的注册结束后以新的参数重新注册，不能丢弃新的参数
+            return pending.future.handle((verifier, t) -> null)
+                    .thenCompose(ignored -> putMerchantAsync(merchantId, credentials, apiV3Key, executor));
+        }
+        CompletableFuture<Verifier> future = registration.future;
+        try {
+            executor.execute(() -> {
+                Verifier verifier;
+                try {
+                    verifier = registerMerchant(merchantId, credentials, apiV3Key);
+                } catch (Throwable t) {
+                    pendingRegistrations.remove(merchantId, registration);
+                    future.completeExceptionally(t);
+                    return;
+                }
+                // 先移除再完成，排在其后的注册在完成回调中能够登记
+                pendingRegistrations.remove(merchantId, registration);
+                future.complete(verifier);
+            });
+        } catch (RejectedExecutionException e) {
+            pendingRegistrations.remove(merchantId, registration);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 批量增加需要自动更新平台证书的商户信息，并发数为{@link #setRefreshConcurrency(int)}设置的值
+     *
+     * @param merchants 商户信息
+     * @return 注册结果
+     * @see #putMerchants(Collection, int)
+     */
+    public BatchResult putMerchants(Collection<MerchantRegistration> merchants) {
+        int parallelism;
+        synchronized (this) {
+            parallelism = refreshConcurrency;
+        }
+        return putMerchants(merchants, parallelism);
+    }
+
+    /**
+     * 批量增加需要自动更新平台证书的商户信息，适用于服务启动时注册大量商户
+     *
+     * <p>各商户的首批证书在临时线程池中并行下载，与定时更新共用{@link #setRefreshConcurrency(int)}设置的全局并发上限，
+     * 下载速率受{@link #setRefreshRateLimit(double)}限制。
+     * 单个商户注册失败不会中断其他商户的注册，失败的商户及异常记录在返回结果中。方法在所有商户处理完成后返回。
+     *
+     * @param merchants 商户信息，不能包含null或重复的商户号
+     * @param parallelism 同时注册的商户数，须大于0，实际的下载并发数不超过全局并发上限
+     * @return 注册结果，包含成功和失败的商户、每个商户的耗时及总耗时
+     */
+    public BatchResult putMerchants(Collection<MerchantRegistration> merchants, int parallelism) {
+        if (merchants == null) {
+            throw new IllegalArgumentException("merchants为空");
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism必须大于0");
+        }
+        // 结果以商户号为键，先校验全部商户，避免漏计或相互覆盖
+        Set<String> merchantIds = new HashSet<>();
+        for (MerchantRegistration merchant : merchants) {
+            if (merchant == null || merchant.getMerchantId() == null) {
+                throw new IllegalArgumentException("merchants包含空的商户信息或商户号");
+            }
+            if (!merchantIds.add(merchant.getMerchantId())) {
+                throw new IllegalArgumentException("merchants包含重复的商户号，merchantId:" + merchant.getMerchantId());
+            }
+        }
+        BatchResult.Collector collector = new BatchResult.Collector();
+        ThreadPoolExecutor workers = newWorkerPool(Math.max(1, Math.min(parallelism, merchants.size())),
+                PUT_MERCHANT_WORKER_THREAD_NAME);
+        try {
+            List<Future<?>> futures = new ArrayList<>(merchants.size());
+            for (MerchantRegistration merchant : merchants) {
+                futures.add(workers.submit(() -> bootstrapMerchant(merchant, collector)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    futures.forEach(f -> f.cancel(true));
+                    break;
+                } catch (ExecutionException e) {
+                    log.error("Put merchant task failed", e.getCause());
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        BatchResult result = collector.finish();
+        log.info("Put merchants finished, result:{}", result);
+        return result;
+    }
+
+    private void bootstrapMerchant(MerchantRegistration merchant, BatchResult.Collector collector) {
+        String merchantId = merchant.getMerchantId();
+        long start = System.nanoTime();
+        try {
+            rateLimiter.acquire();
+            // 在当前工作线程中完成注册，同一商户的并发注册仍会被合并
+            putMerchantAsync(merchantId, merchant.getCredentials(), merchant.getApiV3Key(), Runnable::run).get();
+            collector.recordSuccess(merchantId, Duration.ofNanos(System.nanoTime() - start));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            collector.recordFailure(merchantId, Duration.ofNanos(System.nanoTime() - start), e);
+        } catch (ExecutionException e) {
+            log.error("Put merchant failed.merchantId:{}, e:{}", merchantId, e.getCause());
+            collector.recordFailure(merchantId, Duration.ofNanos(System.nanoTime() - start), e.getCause());
+        } catch (RuntimeException e) {
+            log.error("Put merchant failed.merchantId:{}, e:{}", merchantId, e);
+            collector.recordFailure(merchantId, Duration.ofNanos(System.nanoTime() - start), e);
+        }
+    }
+
+    private Verifier registerMerchant(String merchantId, Credentials credentials, byte[] apiV3Key)
+            throws IOException, GeneralSecurityException, HttpCodeException {
         // 添加或更新商户信息
-        if (certificates.get(merchantId) == null) {
-            certificates.put(merchantId, new ConcurrentHashMap<>());
+        certificates.putIfAbsent(merchantId, new CertificateStore());
+        if (loadCachedCertificates(merchantId, apiV3Key)) {
+            // 先使用缓存的证书提供验签，再在后台下载最新的证书
+            try {
+                registrationWorkers().execute(() -> {
+                    try {
+                        initCertificates(merchantId, credentials, apiV3Key);
+                    } catch (Exception e) {
+                        log.error("Refresh cached certificates failed.merchantId:{}, e:{}", merchantId, e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // 缓存的证书已可用，注册仍然成功，最新的证书由定时更新下载
+                log.warn("Refresh cached certificates rejected.merchantId:{}", merchantId);
+            }
+        } else {
+            initCertificates(merchantId, credentials, apiV3Key);
         }
-        initCertificates(merchantId, credentials, apiV3Key);
         credentialsMap.put(merchantId, credentials);
         apiV3Keys.put(merchantId, apiV3Key);
         // 若没有executor，则启动定时更新证书任务
-        if (executor == null) {
-            beginScheduleUpdate();
-        }
+        beginScheduleUpdate();
+        return new DefaultVerifier(merchantId);
     }
 
     /***
@@ -149,12 +396,92 @@ public class CertificatesManager {
         this.proxyFactory = proxyFactory;
     }
 
+    /**
+     * 设置证书下载器，用于定制下载证书时的超时时间和连接池。原有的下载器会被关闭
+     *
+     * @param downloader 证书下载器
+     */
+    public synchronized void setCertificateDownloader(CertificateDownloader downloader) {
+        if (downloader == null) {
+            throw new IllegalArgumentException("downloader为空");
+        }
+        CertificateDownloader previous = this.downloader;
+        this.downloader = downloader;
+        previous.close();
+    }
+
+    /**
+     * 设置同时更新平台证书的商户数，即证书下载的全局并发上限，更新证书和注册商户共用此上限
+     *
+     * @param refreshConcurrency 并发数，须大于0
+     */
+    public synchronized void setRefreshConcurrency(int refreshConcurrency) {
+        if (refreshConcurrency <= 0) {
+            throw new IllegalArgumentException("refreshConcurrency必须大于0");
+        }
+        if (refreshConcurrency == this.refreshConcurrency) {
+            return;
+        }
+        if (refreshWorkers != null) {
+            // 缩小运行中的线程池时，空闲线程仍可能在退出前领取任务，因此改为重建线程池。
+            // 已提交的任务在原线程池中执行完毕
+            refreshWorkers.shutdown();
+            refreshWorkers = null;
+        }
+        if (registrationWorkers != null) {
+            // 注册随时可能提交，不能关闭线程池。下载并发由downloadPermits限制，线程数短暂超出上限不影响下载并发
+            resize(registrationWorkers, refreshConcurrency);
+        }
+        // 已获得许可的下载在原Semaphore上释放
+        downloadPermits = new Semaphore(refreshConcurrency, true);
+        this.refreshConcurrency = refreshConcurrency;
+    }
+
+    /**
+     * 设置证书下载的速率上限，避免商户较多时集中请求微信支付
+     *
+     * @param permitsPerSecond 每秒最多发起的下载次数，小于等于0时不限速
+     */
+    public void setRefreshRateLimit(double permitsPerSecond) {
+        this.rateLimiter = new DownloadRateLimiter(permitsPerSecond);
+    }
+
+    /**
+     * @return 最近一次批量更新平台证书的结果，尚未执行过时为null
+     */
+    public BatchResult getLastRefreshResult() {
+        return lastRefreshResult;
+    }
+
+    /**
+     * 设置平台证书的本地缓存。设置后注册商户时优先使用缓存的证书，并在后台下载最新的证书；每次下载成功后更新缓存
+     *
+     * @param certificateCache 证书缓存，为null时不使用缓存
+     */
+    public void setCertificateCache(CertificateCache certificateCache) {
+        this.certificateCache = certificateCache;
+    }
+
+    /**
+     * 设置监听器，接收每次下载平台证书的耗时、结果以及更新后证书的有效期
+     *
+     * @param metrics 监听器
+     */
+    public void setMetricsListener(MetricsListener metrics) {
+        if (metrics == null) {
+            throw new IllegalArgumentException("metrics为空");
+        }
+        this.metrics = metrics;
+    }
+
     public synchronized HttpHost resolveProxy() {
         return Objects.nonNull(proxyFactory) ? proxyFactory.buildHttpProxy() : proxy;
     }
 
     /**
-     * 停止自动更新平台证书，停止后无法再重新启动
+     * 停止自动更新平台证书，停止后无法再重新启动。
+     * 停止后{@link #putMerchant(String, Credentials, byte[])}仍在调用线程上注册，
+     * 不指定线程池的{@link #putMerchantAsync(String, Credentials, byte[])}以{@link RejectedExecutionException}失败
      */
     public void stop() {
         if (executor != null) {
@@ -164,6 +491,21 @@ public class CertificatesManager {
                 log.error("Executor shutdown now failed", e);
             }
         }
+        synchronized (this) {
+            stopped = true;
+            if (refreshWorkers != null) {
+                // 取消尚未执行的更新任务，等待它们的refreshCertificates不会一直阻塞
+                for (Runnable task : refreshWorkers.shutdownNow()) {
+                    if (task instanceof Future) {
+                        ((Future<?>) task).cancel(false);
+                    }
+                }
+            }
+            if (registrationWorkers != null) {
+                registrationWorkers.shutdownNow();
+            }
+        }
+        downloader.close();
     }
 
     private X509Certificate getLatestCertificate(String merchantId)
@@ -171,24 +513,17 @@ public class CertificatesManager {
         if (merchantId == null || merchantId.isEmpty()) {
             throw new IllegalArgumentException("merchantId为空");
         }
-        Map<BigInteger, X509Certificate> merchantCertificates = certificates.get(merchantId);
-        if (merchantCertificates == null || merchantCertificates.isEmpty()) {
+        CertificateStore store = certificates.get(merchantId);
+        CertificateIndex index = store == null ? null : store.get();
+        if (index == null || index.isEmpty()) {
             throw new NotFoundException("没有最新的平台证书，merchantId:" + merchantId);
         }
-        X509Certificate latestCert = null;
-        for (X509Certificate x509Cert : merchantCertificates.values()) {
-            // 若latestCert为空或x509Cert的证书有效开始时间在latestCert之后，则更新latestCert
-            if (latestCert == null || x509Cert.getNotBefore().after(latestCert.getNotBefore())) {
-                latestCert = x509Cert;
-            }
-        }
-        try {
-            latestCert.checkValidity();
-            return latestCert;
-        } catch (CertificateExpiredException | CertificateNotYetValidException e) {
+        X509Certificate latestCert = index.getValidCertificate();
+        if (latestCert == null) {
             log.error("平台证书未生效或已过期，merchantId:{}", merchantId);
+            throw new NotFoundException("没有最新的平台证书，merchantId:" + merchantId);
         }
-        throw new NotFoundException("没有最新的平台证书，merchantId:" + merchantId);
+        return latestCert;
     }
 
     /**
@@ -200,13 +535,13 @@ public class CertificatesManager {
      */
     public Verifier getVerifier(String merchantId) throws NotFoundException {
         // 若商户信息不存在，返回错误
-        ConcurrentHashMap<BigInteger, X509Certificate> merchantCertificates = certificates.get(merchantId);
+        CertificateStore merchantCertificates = certificates.get(merchantId);
         byte[] apiV3Key = apiV3Keys.get(merchantId);
         Credentials credentials = credentialsMap.get(merchantId);
         if (merchantId == null || merchantId.isEmpty()) {
             throw new IllegalArgumentException("merchantId为空");
         }
-        if (merchantCertificates == null || merchantCertificates.size() == 0) {
+        if (merchantCertificates == null || merchantCertificates.get().isEmpty()) {
             throw new NotFoundException("平台证书为空，merchantId:" + merchantId);
         }
         if (apiV3Key.length == 0) {
@@ -219,7 +554,10 @@ public class CertificatesManager {
         return new DefaultVerifier(merchantId);
     }
 
-    private void beginScheduleUpdate() {
+    private synchronized void beginScheduleUpdate() {
+        if (executor != null) {
+            return;
+        }
         executor = new SafeSingleScheduleExecutor();
         Runnable runnable = () -> {
             try {
@@ -235,7 +573,7 @@ public class CertificatesManager {
     }
 
     /**
-     * 下载和更新平台证书
+     * 下载和更新平台证书，下载前须获得全局并发上限的许可
      *
      * @param merchantId 商户号
      * @param verifier 验签器
@@ -245,34 +583,94 @@ public class CertificatesManager {
      * @throws IOException IO异常
      * @throws GeneralSecurityException 通用安全性异常
      */
-    private synchronized void downloadAndUpdateCert(String merchantId, Verifier verifier, Credentials credentials,
+    private void downloadAndUpdateCert(String merchantId, Verifier verifier, Credentials credentials,
             byte[] apiV3Key) throws HttpCodeException, IOException, GeneralSecurityException {
-        proxy = resolveProxy();
-        try (CloseableHttpClient httpClient = WechatPayHttpClientBuilder.create()
-                .withCredentials(credentials)
-                .withValidator(verifier == null ? emptyValidator : new WechatPay2Validator(verifier))
-                .withProxy(proxy)
-                .build()) {
-            HttpGet httpGet = new HttpGet(CERT_DOWNLOAD_PATH);
-            httpGet.addHeader(ACCEPT, APPLICATION_JSON.toString());
-            try (CloseableHttpResponse response = httpClient.execute(httpGet)) {
-                int statusCode = response.getStatusLine().getStatusCode();
-                String body = EntityUtils.toString(response.getEntity());
-                if (statusCode == SC_OK) {
-                    Map<BigInteger, X509Certificate> newCertList = CertSerializeUtil.deserializeToCerts(apiV3Key, body);
-                    if (newCertList.isEmpty()) {
-                        log.warn("Cert list is empty");
-                        return;
-                    }
-                    ConcurrentHashMap<BigInteger, X509Certificate> merchantCertificates = certificates.get(merchantId);
-                    merchantCertificates.clear();
-                    merchantCertificates.putAll(newCertList);
-                } else {
-                    log.error("Auto update cert failed, statusCode = {}, body = {}", statusCode, body);
-                    throw new HttpCodeException("下载平台证书返回状态码异常，状态码为:" + statusCode);
+        Semaphore permits = downloadPermits;
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待下载平台证书时被中断，merchantId:" + merchantId);
+        }
+        ReentrantLock lock = merchantLocks.computeIfAbsent(merchantId, k -> new ReentrantLock());
+        lock.lock();
+        MetricsListener listener = metrics;
+        CertificateRefreshEvent event = WechatPayEvents.beginCertificateRefresh();
+        long start = System.nanoTime();
+        boolean success = false;
+        int certificateCount = 0;
+        try {
+            String body = downloader.download(credentials,
+                    verifier == null ? emptyValidator : new WechatPay2Validator(verifier), resolveProxy());
+            Map<BigInteger, X509Certificate> newCertList = CertSerializeUtil.deserializeToCerts(apiV3Key, body);
+            if (newCertList.isEmpty()) {
+                log.warn("Cert list is empty");
+                success = true;
+                return;
+            }
+            // 整体替换证书集合，验签线程不会看到清空后的中间状态
+            certificates.get(merchantId).update(newCertList.values());
+            success = true;
+            certificateCount = newCertList.size();
+            reportCertificateAge(listener, merchantId, newCertList.values());
+            CertificateCache cache = certificateCache;
+            if (cache != null) {
+                try {
+                    cache.store(merchantId, apiV3Key, newCertList.values());
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Store certificates to cache failed.merchantId:{}", merchantId, e);
                 }
             }
+        } finally {
+            listener.onCertificateRefresh(merchantId, success, System.nanoTime() - start);
+            if (event != null) {
+                event.merchantId = merchantId;
+                event.success = success;
+                event.certificateCount = certificateCount;
+                event.commit();
+            }
+            lock.unlock();
+            permits.release();
+        }
+    }
+
+    private static void reportCertificateAge(MetricsListener listener, String merchantId,
+            Collection<X509Certificate> certificates) {
+        if (listener == MetricsListener.NOOP) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (X509Certificate certificate : certificates) {
+            listener.onCertificateAge(merchantId, certificate.getSerialNumber().toString(16).toUpperCase(),
+                    TimeUnit.MILLISECONDS.toSeconds(now - certificate.getNotBefore().getTime()),
+                    TimeUnit.MILLISECONDS.toSeconds(certificate.getNotAfter().getTime() - now));
+        }
+    }
+
+    /**
+     * 从本地缓存加载平台证书
+     *
+     * @param merchantId 商户号
+     * @param apiV3Key apiv3密钥
+     * @return 是否加载到了有效的证书
+     */
+    private boolean loadCachedCertificates(String merchantId, byte[] apiV3Key) {
+        CertificateCache cache = certificateCache;
+        if (cache == null) {
+            return false;
+        }
+        Collection<X509Certificate> cached;
+        try {
+            cached = cache.load(merchantId, apiV3Key);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Load certificates from cache failed.merchantId:{}", merchantId, e);
+            return false;
+        }
+        if (cached == null || cached.isEmpty()) {
+            return false;
         }
+        certificates.get(merchantId).update(cached);
+        return true;
     }
 
     /**
@@ -294,17 +692,140 @@ public class CertificatesManager {
      * 更新平台证书，每UPDATE_INTERVAL_MINUTE调用一次
      */
     private void updateCertificates() {
-        for (Map.Entry<String, Credentials> entry : credentialsMap.entrySet()) {
-            String merchantId = entry.getKey();
-            Credentials credentials = entry.getValue();
-            byte[] apiv3Key = apiV3Keys.get(merchantId);
-            Verifier verifier = new DefaultVerifier(merchantId);
+        BatchResult result = refreshCertificates();
+        if (!result.isAllSucceeded()) {
+            log.warn("Update Certificates partially failed, result:{}", result);
+        }
+    }
+
+    /**
+     * 立即更新所有商户的平台证书
+     *
+     * <p>各商户的证书在工作线程池中并行下载，并发数和下载速率分别受{@link #setRefreshConcurrency(int)}和
+     * {@link #setRefreshRateLimit(double)}限制。单个商户更新失败不影响其他商户，原有证书继续可用。
+     * {@link #stop()}之后调用，或更新过程中被停止时，未能执行的商户记录为失败。
+     *
+     * @return 更新结果，包含成功和失败的商户及耗时
+     */
+    public BatchResult refreshCertificates() {
+        BatchResult.Collector collector = new BatchResult.Collector();
+        Map<String, Future<?>> futures = new LinkedHashMap<>();
+        ThreadPoolExecutor workers = null;
+        for (String merchantId : credentialsMap.keySet()) {
+            Runnable task = () -> refreshMerchant(merchantId, collector);
             try {
-                downloadAndUpdateCert(merchantId, verifier, credentials, apiv3Key);
-            } catch (Exception e) {
-                log.error("downloadAndUpdateCert Failed.merchantId:{}, e:{}", merchantId, e);
+                if (workers == null) {
+                    workers = refreshWorkers();
+                }
+                futures.put(merchantId, workers.submit(task));
+            } catch (RejectedExecutionException e) {
+                // setRefreshConcurrency重建了线程池时改用新的线程池，已停止时记录为该商户的失败
+                try {
+                    workers = refreshWorkers();
+                    futures.put(merchantId, workers.submit(task));
+                } catch (RejectedExecutionException stopped) {
+                    collector.recordFailure(merchantId, Duration.ZERO, stopped);
+                }
+            }
+        }
+        for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+            try {
+                entry.getValue().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.values().forEach(f -> f.cancel(true));
+                break;
+            } catch (CancellationException e) {
+                collector.recordFailure(entry.getKey(), Duration.ZERO, e);
+            } catch (ExecutionException e) {
+                log.error("Refresh certificates task failed", e.getCause());
             }
         }
+        BatchResult result = collector.finish();
+        lastRefreshResult = result;
+        log.info("Refresh certificates finished, result:{}", result);
+        return result;
+    }
+
+    private void refreshMerchant(String merchantId, BatchResult.Collector collector) {
+        long start = System.nanoTime();
+        try {
+            rateLimiter.acquire();
+            downloadAndUpdateCert(merchantId, new DefaultVerifier(merchantId), credentialsMap.get(merchantId),
+                    apiV3Keys.get(merchantId));
+            collector.recordSuccess(merchantId, Duration.ofNanos(System.nanoTime() - start));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            collector.recordFailure(merchantId, Duration.ofNanos(System.nanoTime() - start), e);
+        } catch (Exception e) {
+            log.error("downloadAndUpdateCert Failed.merchantId:{}, e:{}", merchantId, e);
+            collector.recordFailure(merchantId, Duration.ofNanos(System.nanoTime() - start), e);
+        }
+    }
+
+    private synchronized ThreadPoolExecutor refreshWorkers() {
+        checkNotStopped();
+        if (refreshWorkers == null) {
+            refreshWorkers = newWorkerPool(refreshConcurrency, REFRESH_CERT_WORKER_THREAD_NAME);
+        }
+        return refreshWorkers;
+    }
+
+    private synchronized ThreadPoolExecutor registrationWorkers() {
+        checkNotStopped();
+        if (registrationWorkers == null) {
+            registrationWorkers = newWorkerPool(refreshConcurrency, PUT_MERCHANT_WORKER_THREAD_NAME);
+        }
+        return registrationWorkers;
+    }
+
+    private void checkNotStopped() {
+        if (stopped) {
+            throw new RejectedExecutionException("CertificatesManager已停止");
+        }
+    }
+
+    private static void resize(ThreadPoolExecutor workers, int size) {
+        // 先调整较大的一侧，避免核心线程数大于最大线程数
+        if (size > workers.getMaximumPoolSize()) {
+            workers.setMaximumPoolSize(size);
+            workers.setCorePoolSize(size);
+        } else {
+            workers.setCorePoolSize(size);
+            workers.setMaximumPoolSize(size);
+        }
+    }
+
+    private static ThreadPoolExecutor newWorkerPool(int size, String threadNamePrefix) {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, threadNamePrefix + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 两次定时更新之间间隔较长，空闲时回收全部线程
+        workers.allowCoreThreadTimeOut(true);
+        return workers;
+    }
+
+    /**
+     * 进行中的商户注册及其参数
+     */
+    private static class PendingRegistration {
+
+        private final Credentials credentials;
+        private final byte[] apiV3Key;
+        private final CompletableFuture<Verifier> future = new CompletableFuture<>();
+
+        private PendingRegistration(Credentials credentials, byte[] apiV3Key) {
+            this.credentials = credentials;
+            this.apiV3Key = apiV3Key;
+        }
+
+        private boolean matches(Credentials credentials, byte[] apiV3Key) {
+            return this.credentials.equals(credentials) && Arrays.equals(this.apiV3Key, apiV3Key);
+        }
     }
 
     /**
@@ -322,25 +843,33 @@ public class CertificatesManager {
             if (serialNumber.isEmpty() || message.length == 0 || signature.isEmpty()) {
                 throw new IllegalArgumentException("serialNumber或message或signature为空");
             }
-            BigInteger serialNumber16Radix = new BigInteger(serialNumber, 16);
-            ConcurrentHashMap<BigInteger, X509Certificate> merchantCertificates = certificates.get(merchantId);
-            X509Certificate certificate = merchantCertificates.get(serialNumber16Radix);
-            if (certificate == null) {
+            CertificateStore store = certificates.get(merchantId);
+            VerificationEngine engine = store == null ? null : store.get().getEngine(serialNumber);
+            if (engine == null) {
                 log.error("商户证书为空，serialNumber:{}", serialNumber);
                 return false;
             }
-            try {
-                Signature sign = Signature.getInstance("SHA256withRSA");
-                sign.initVerify(certificate);
-                sign.update(message);
-                return sign.verify(Base64.getDecoder().decode(signature));
-            } catch (NoSuchAlgorithmException e) {
-                throw new RuntimeException("当前Java环境不支持SHA256withRSA", e);
-            } catch (SignatureException e) {
-                throw new RuntimeException("签名验证过程发生了错误", e);
-            } catch (InvalidKeyException e) {
-                throw new RuntimeException("无效的证书", e);
+            return engine.verify(message, signature);
+        }
+
+        @Override
+        public boolean verify(String serialNumber, MessageWriter message, String signature) throws IOException {
+            if (serialNumber.isEmpty() || signature.isEmpty()) {
+                throw new IllegalArgumentException("serialNumber或signature为空");
+            }
+            CertificateStore store = certificates.get(merchantId);
+            VerificationEngine engine = store == null ? null : store.get().getEngine(serialNumber);
+            if (engine == null) {
+                log.error("商户证书为空，serialNumber:{}", serialNumber);
+                return false;
             }
+            return engine.verify(message, signature);
+        }
+
+        @Override
+        public boolean containsSerialNumber(String serialNumber) {
+            CertificateStore store = certificates.get(merchantId);
+            return store != null && store.get().getEngine(serialNumber) != null;
         }
 
         public X509Certificate getValidCertificate() {
@@ -360,7 +889,13 @@ public class CertificatesManager {
 
         @Override
         public String getSerialNumber() {
-            return getValidCertificate().getSerialNumber().toString(16).toUpperCase();
+            CertificateStore store = certificates.get(merchantId);
+            String serialNumber = store == null ? null : store.get().getValidSerialNumber();
+            if (serialNumber == null) {
+                // 由getValidCertificate记录日志并抛出异常
+                return getValidCertificate().getSerialNumber().toString(16).toUpperCase();
+            }
+            return serialNumber;
         }
     }
 }
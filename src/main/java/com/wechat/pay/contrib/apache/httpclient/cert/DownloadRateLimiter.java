@@ -0,0 +1,32 @@
+package com.wechat.pay.contrib.apache.httpclient.cert;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 限制证书下载的发起速率，各下载按固定间隔依次获得发起时刻
+ */
+class DownloadRateLimiter {
+
+    private final long intervalNanos;
+    private final AtomicLong nextSlot = new AtomicLong(System.nanoTime());
+
+    /**
+     * @param permitsPerSecond 每秒允许发起的下载次数，小于等于0时不限速
+     */
+    DownloadRateLimiter(double permitsPerSecond) {
+        this.intervalNanos = permitsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) : 0;
+    }
+
+    void acquire() throws InterruptedException {
+        if (intervalNanos == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long previous = nextSlot.getAndAccumulate(now, (slot, current) -> Math.max(slot, current) + intervalNanos);
+        long waitNanos = previous - now;
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
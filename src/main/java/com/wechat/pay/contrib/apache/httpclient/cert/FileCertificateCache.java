@@ -0,0 +1,167 @@
+package com.wechat.pay.contrib.apache.httpclient.cert;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateExpiredException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.CertificateNotYetValidException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 基于本地目录的平台证书缓存
+ *
+ * <p>每个商户对应目录下的一个PEM文件，首行记录对其余内容计算的HMAC-SHA256。HMAC的密钥由APIv3密钥派生，
+ * 不直接使用同时作为AES-GCM密钥的APIv3密钥。读取时校验HMAC，文件被篡改或APIv3密钥变更时视为没有缓存。文件先写入临时文件再原子替换，不会读到写了一半的内容。
+ */
+public class FileCertificateCache implements CertificateCache {
+
+    private static final Logger log = LoggerFactory.getLogger(FileCertificateCache.class);
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    /**
+     * 派生HMAC密钥时使用的标签
+     */
+    private static final byte[] MAC_KEY_LABEL = "wechatpay-cert-cache".getBytes(StandardCharsets.US_ASCII);
+    private static final String HEADER_PREFIX = "# wechatpay-platform-certificates hmac-sha256=";
+    private static final Pattern MERCHANT_ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]+");
+    private static final Base64.Encoder PEM_ENCODER =
+            Base64.getMimeEncoder(64, "\n".getBytes(StandardCharsets.US_ASCII));
+
+    private final Path directory;
+
+    /**
+     * @param directory 缓存目录，不存在时自动创建
+     */
+    public FileCertificateCache(Path directory) {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory为空");
+        }
+        this.directory = directory;
+    }
+
+    @Override
+    public Collection<X509Certificate> load(String merchantId, byte[] apiV3Key) throws IOException {
+        Path file = resolve(merchantId);
+        if (!Files.isRegularFile(file)) {
+            return Collections.emptyList();
+        }
+        byte[] content = Files.readAllBytes(file);
+        int headerEnd = indexOf(content, (byte) '\n');
+        if (headerEnd < 0) {
+            log.warn("平台证书缓存格式错误，file:{}", file);
+            return Collections.emptyList();
+        }
+        String header = new String(content, 0, headerEnd, StandardCharsets.US_ASCII);
+        byte[] body = Arrays.copyOfRange(content, headerEnd + 1, content.length);
+        if (!header.startsWith(HEADER_PREFIX)) {
+            log.warn("平台证书缓存格式错误，file:{}", file);
+            return Collections.emptyList();
+        }
+        byte[] expected;
+        try {
+            expected = Base64.getDecoder().decode(header.substring(HEADER_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            log.warn("平台证书缓存格式错误，file:{}", file);
+            return Collections.emptyList();
+        }
+        try {
+            if (!MessageDigest.isEqual(expected, hmac(apiV3Key, body))) {
+                log.warn("平台证书缓存校验失败，file:{}", file);
+                return Collections.emptyList();
+            }
+            CertificateFactory cf = CertificateFactory.getInstance("X509");
+            List<X509Certificate> certificates = new ArrayList<>();
+            for (Certificate certificate : cf.generateCertificates(new ByteArrayInputStream(body))) {
+                X509Certificate x509Cert = (X509Certificate) certificate;
+                try {
+                    x509Cert.checkValidity();
+                } catch (CertificateExpiredException | CertificateNotYetValidException ignored) {
+                    continue;
+                }
+                certificates.add(x509Cert);
+            }
+            return certificates;
+        } catch (GeneralSecurityException e) {
+            log.warn("读取平台证书缓存失败，file:{}", file, e);
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public void store(String merchantId, byte[] apiV3Key, Collection<X509Certificate> certificates)
+            throws IOException {
+        Path file = resolve(merchantId);
+        StringBuilder pem = new StringBuilder();
+        byte[] content;
+        try {
+            for (X509Certificate certificate : certificates) {
+                pem.append("-----BEGIN CERTIFICATE-----\n")
+                        .append(PEM_ENCODER.encodeToString(certificate.getEncoded()))
+                        .append("\n-----END CERTIFICATE-----\n");
+            }
+            byte[] body = pem.toString().getBytes(StandardCharsets.US_ASCII);
+            String header = HEADER_PREFIX + Base64.getEncoder().encodeToString(hmac(apiV3Key, body)) + "\n";
+            content = (header + pem).getBytes(StandardCharsets.US_ASCII);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("无法序列化平台证书", e);
+        }
+
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "." + merchantId + "-", ".tmp");
+        try {
+            Files.write(temp, content);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Path resolve(String merchantId) {
+        if (merchantId == null || !MERCHANT_ID_PATTERN.matcher(merchantId).matches()) {
+            throw new IllegalArgumentException("merchantId包含非法字符");
+        }
+        return directory.resolve(merchantId + ".pem");
+    }
+
+    /**
+     * 以HMAC-SHA256(apiV3Key, "wechatpay-cert-cache")作为密钥，对内容计算HMAC-SHA256
+     */
+    private static byte[] hmac(byte[] apiV3Key, byte[] body) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+        mac.init(new SecretKeySpec(apiV3Key, HMAC_ALGORITHM));
+        byte[] macKey = mac.doFinal(MAC_KEY_LABEL);
+        mac.init(new SecretKeySpec(macKey, HMAC_ALGORITHM));
+        return mac.doFinal(body);
+    }
+
+    private static int indexOf(byte[] content, byte b) {
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,38 @@
+package com.wechat.pay.contrib.apache.httpclient.cert;
+
+import com.wechat.pay.contrib.apache.httpclient.Credentials;
+
+/**
+ * 批量注册商户时使用的商户信息
+ *
+ * @see CertificatesManager#putMerchants(java.util.Collection, int)
+ */
+public class MerchantRegistration {
+
+    private final String merchantId;
+    private final Credentials credentials;
+    private final byte[] apiV3Key;
+
+    /**
+     * @param merchantId 商户号
+     * @param credentials 认证器
+     * @param apiV3Key APIv3密钥
+     */
+    public MerchantRegistration(String merchantId, Credentials credentials, byte[] apiV3Key) {
+        this.merchantId = merchantId;
+        this.credentials = credentials;
+        this.apiV3Key = apiV3Key;
+    }
+
+    public String getMerchantId() {
+        return merchantId;
+    }
+
+    public Credentials getCredentials() {
+        return credentials;
+    }
+
+    public byte[] getApiV3Key() {
+        return apiV3Key;
+    }
+}
@@ -0,0 +1,26 @@
+package com.wechat.pay.contrib.apache.httpclient.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 下载并更新一个商户的平台证书
+ */
+@Name("com.wechat.pay.CertificateRefresh")
+@Label("WeChat Pay Certificate Refresh")
+@Category("WeChat Pay")
+@Description("下载、解密并更新一个商户的平台证书")
+public final class CertificateRefreshEvent extends Event {
+
+    @Label("Merchant ID")
+    public String merchantId;
+
+    @Label("Success")
+    public boolean success;
+
+    @Label("Certificate Count")
+    public int certificateCount;
+}
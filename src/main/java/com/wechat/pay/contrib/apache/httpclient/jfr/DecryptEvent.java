@@ -0,0 +1,26 @@
+package com.wechat.pay.contrib.apache.httpclient.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 以APIv3密钥解密一段AEAD_AES_256_GCM密文
+ */
+@Name("com.wechat.pay.Decrypt")
+@Label("WeChat Pay Decrypt")
+@Category("WeChat Pay")
+@Description("解密回调通知或平台证书的AEAD_AES_256_GCM密文")
+public final class DecryptEvent extends Event {
+
+    @Label("Associated Data")
+    public String associatedData;
+
+    @Label("Ciphertext Size")
+    @Description("密文的长度，以Base64字符串传入时为编码后的长度")
+    @DataAmount
+    public long ciphertextSize;
+}
@@ -0,0 +1,42 @@
+package com.wechat.pay.contrib.apache.httpclient.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 一次发往微信支付的请求，包含签名、网络和验签的全部耗时
+ */
+@Name("com.wechat.pay.Request")
+@Label("WeChat Pay Request")
+@Category("WeChat Pay")
+@Description("发往微信支付的请求，包含签名、网络和验签")
+public final class RequestEvent extends Event {
+
+    @Label("Merchant ID")
+    public String merchantId;
+
+    @Label("Method")
+    public String method;
+
+    @Label("URI Template")
+    @Description("单号等变量替换为{id}后的请求路径")
+    public String uriTemplate;
+
+    @Label("Request ID")
+    public String requestId;
+
+    @Label("Status Code")
+    public int statusCode;
+
+    @Label("Request Body Size")
+    @DataAmount
+    public long requestBodySize;
+
+    @Label("Response Body Size")
+    @DataAmount
+    public long responseBodySize;
+}
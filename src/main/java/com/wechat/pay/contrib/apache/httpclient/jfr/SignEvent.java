@@ -0,0 +1,25 @@
+package com.wechat.pay.contrib.apache.httpclient.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 以商户私钥计算一次签名
+ */
+@Name("com.wechat.pay.Sign")
+@Label("WeChat Pay Sign")
+@Category("WeChat Pay")
+@Description("以商户私钥计算SHA256withRSA签名")
+public final class SignEvent extends Event {
+
+    @Label("Certificate Serial Number")
+    public String serialNumber;
+
+    @Label("Message Size")
+    @DataAmount
+    public long messageSize;
+}
@@ -0,0 +1,32 @@
+package com.wechat.pay.contrib.apache.httpclient.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * 对一个应答验签
+ */
+@Name("com.wechat.pay.Verify")
+@Label("WeChat Pay Verify")
+@Category("WeChat Pay")
+@Description("以平台证书或微信支付公钥对应答验签")
+public final class VerifyEvent extends Event {
+
+    @Label("Request ID")
+    public String requestId;
+
+    @Label("Serial Number")
+    public String serialNumber;
+
+    @Label("Body Size")
+    @DataAmount
+    public long bodySize;
+
+    @Label("Failure")
+    @Description("验签失败的原因，通过时为空")
+    public String failure;
+}
@@ -0,0 +1,95 @@
+package com.wechat.pay.contrib.apache.httpclient.jfr;
+
+/**
+ * 创建JFR事件的入口
+ *
+ * <p>运行环境没有jdk.jfr（如早于8u262的Java 8），或以-Dwechatpay.jfr=false启动时，各方法直接返回null，
+ * 调用方据此跳过记录，不会加载任何事件类。Flight Recorder未启用对应事件时同样返回null，除一次判断外没有额外开销。
+ * 返回的事件已调用begin()，调用方填写字段后调用commit()。
+ */
+public final class WechatPayEvents {
+
+    private static final boolean AVAILABLE = detect();
+
+    private WechatPayEvents() {
+    }
+
+    private static boolean detect() {
+        if (!Boolean.parseBoolean(System.getProperty("wechatpay.jfr", "true"))) {
+            return false;
+        }
+        try {
+            Class.forName("jdk.jfr.Event", false, WechatPayEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return 当前运行环境能否记录JFR事件
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    public static RequestEvent beginRequest() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        RequestEvent event = new RequestEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    public static SignEvent beginSign() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        SignEvent event = new SignEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    public static VerifyEvent beginVerify() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        VerifyEvent event = new VerifyEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    public static DecryptEvent beginDecrypt() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        DecryptEvent event = new DecryptEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    public static CertificateRefreshEvent beginCertificateRefresh() {
+        if (!AVAILABLE) {
+            return null;
+        }
+        CertificateRefreshEvent event = new CertificateRefreshEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+}
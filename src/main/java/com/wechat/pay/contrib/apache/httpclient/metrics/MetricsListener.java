@@ -0,0 +1,92 @@
+package com.wechat.pay.contrib.apache.httpclient.metrics;
+
+/**
+ * 接收微信支付请求各阶段耗时和结果的监听器，用于对接Micrometer、Prometheus等监控系统
+ *
+ * <p>所有方法都有空的默认实现，按需重写即可。请求相关的回调以请求方法和{@link UriTemplates#normalize(String)}
+ * 得到的路径模板作为维度，路径中的单号等变量已被替换，可以直接作为指标的标签。
+ * 回调在发起请求或更新证书的线程上同步执行，实现应尽快返回且不应抛出异常。
+ *
+ * @see com.wechat.pay.contrib.apache.httpclient.WechatPayHttpClientBuilder#withMetricsListener(MetricsListener)
+ * @see com.wechat.pay.contrib.apache.httpclient.cert.CertificatesManager#setMetricsListener(MetricsListener)
+ */
+public interface MetricsListener {
+
+    /**
+     * 不做任何处理的监听器
+     */
+    MetricsListener NOOP = new MetricsListener() {
+    };
+
+    /**
+     * 生成Authorization签名
+     *
+     * @param method 请求方法
+     * @param uriTemplate 路径模板
+     * @param nanos 耗时，单位为纳秒
+     */
+    default void onSign(String method, String uriTemplate, long nanos) {
+    }
+
+    /**
+     * 请求发送并收到应答，即网络部分
+     *
+     * @param method 请求方法
+     * @param uriTemplate 路径模板
+     * @param statusCode 应答状态码，未收到应答时为-1
+     * @param nanos 耗时，单位为纳秒
+     */
+    default void onExecute(String method, String uriTemplate, int statusCode, long nanos) {
+    }
+
+    /**
+     * 对成功应答验签
+     *
+     * @param method 请求方法
+     * @param uriTemplate 路径模板
+     * @param failure 验签失败的原因，验签通过时为null
+     * @param nanos 耗时，单位为纳秒
+     */
+    default void onValidate(String method, String uriTemplate, ValidationFailure failure, long nanos) {
+    }
+
+    /**
+     * 为签名或验签而缓存到内存中的请求体或应答体，可重复读取的实体不会被缓存，也不会触发此回调
+     *
+     * @param method 请求方法
+     * @param uriTemplate 路径模板
+     * @param type 请求体或应答体
+     * @param bytes 缓存的字节数
+     */
+    default void onBodyBuffered(String method, String uriTemplate, BodyType type, long bytes) {
+    }
+
+    /**
+     * 下载并更新一个商户的平台证书
+     *
+     * @param merchantId 商户号
+     * @param success 是否成功
+     * @param nanos 耗时，单位为纳秒
+     */
+    default void onCertificateRefresh(String merchantId, boolean success, long nanos) {
+    }
+
+    /**
+     * 平台证书更新后，报告每张证书的生效时长和剩余有效期
+     *
+     * @param merchantId 商户号
+     * @param serialNumber 证书序列号
+     * @param ageSeconds 自证书生效起经过的秒数
+     * @param remainingSeconds 距证书过期的秒数，已过期时为负数
+     */
+    default void onCertificateAge(String merchantId, String serialNumber, long ageSeconds, long remainingSeconds) {
+    }
+
+    /**
+     * 被缓存的实体类型
+     */
+    enum BodyType {
+        REQUEST,
+        RESPONSE
+    }
+}
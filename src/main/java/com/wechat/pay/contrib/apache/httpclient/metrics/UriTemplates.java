@@ -0,0 +1,85 @@
+package com.wechat.pay.contrib.apache.httpclient.metrics;
+
+/**
+ * 把请求路径归一化为路径模板，使监控指标的标签数量保持有限
+ *
+ * <p>以下路径段被替换为{id}：
+ * <ul>
+ *     <li>紧跟在以-no、_no、-id、_id、-code、_code结尾或等于id的路径段之后，如out-trade-no/{id}</li>
+ *     <li>包含4个及以上数字，如商户订单号、微信支付订单号、批次号</li>
+ *     <li>长度不小于32个字符</li>
+ * </ul>
+ * 例如/v3/pay/transactions/out-trade-no/1217752501201407033233368018?mchid=1230000109
+ * 归一化为/v3/pay/transactions/out-trade-no/{id}。查询参数被忽略。
+ */
+public final class UriTemplates {
+
+    private static final String ID = "{id}";
+    private static final int MIN_ID_DIGITS = 4;
+    private static final int MIN_ID_LENGTH = 32;
+    private static final String[] ID_MARKER_SUFFIXES = {"-no", "_no", "-id", "_id", "-code", "_code"};
+
+    private UriTemplates() {
+    }
+
+    /**
+     * @param path 请求路径，可以带查询参数
+     * @return 路径模板，path为null或空时返回/
+     */
+    public static String normalize(String path) {
+        if (path == null || path.isEmpty()) {
+            return "/";
+        }
+        int end = path.indexOf('?');
+        if (end < 0) {
+            end = path.length();
+        }
+        StringBuilder template = new StringBuilder(end);
+        boolean afterMarker = false;
+        int start = path.charAt(0) == '/' ? 1 : 0;
+        while (start <= end) {
+            int slash = path.indexOf('/', start);
+            if (slash < 0 || slash > end) {
+                slash = end;
+            }
+            template.append('/');
+            if (slash > start) {
+                if (afterMarker || isIdentifier(path, start, slash)) {
+                    template.append(ID);
+                    afterMarker = false;
+                } else {
+                    template.append(path, start, slash);
+                    afterMarker = isIdMarker(path, start, slash);
+                }
+            }
+            start = slash + 1;
+        }
+        return template.toString();
+    }
+
+    private static boolean isIdentifier(String path, int start, int end) {
+        if (end - start >= MIN_ID_LENGTH) {
+            return true;
+        }
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            if (c >= '0' && c <= '9' && ++digits >= MIN_ID_DIGITS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isIdMarker(String path, int start, int end) {
+        if (end - start == 2 && path.startsWith("id", start)) {
+            return true;
+        }
+        for (String suffix : ID_MARKER_SUFFIXES) {
+            if (end - start > suffix.length() && path.startsWith(suffix, end - suffix.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
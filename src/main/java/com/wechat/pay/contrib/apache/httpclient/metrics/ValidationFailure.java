@@ -0,0 +1,30 @@
+package com.wechat.pay.contrib.apache.httpclient.metrics;
+
+/**
+ * 应答验签失败的原因
+ *
+ * @see com.wechat.pay.contrib.apache.httpclient.Validator#diagnose(org.apache.http.client.methods.CloseableHttpResponse)
+ */
+public enum ValidationFailure {
+
+    /**
+     * 缺少Request-ID或Wechatpay-*应答头，或应答头格式错误
+     */
+    INVALID_HEADER,
+    /**
+     * 应答时间戳与本地时间相差超过5分钟
+     */
+    EXPIRED,
+    /**
+     * 验签器没有应答头Wechatpay-Serial对应的平台证书或微信支付公钥，通常是平台证书尚未更新
+     */
+    UNKNOWN_SERIAL,
+    /**
+     * 签名与应答内容不符
+     */
+    SIGNATURE_MISMATCH,
+    /**
+     * 自定义的验签器返回失败，原因未知
+     */
+    UNKNOWN
+}
@@ -8,6 +8,7 @@ import com.wechat.pay.contrib.apache.httpclient.exception.ParseException;
 import com.wechat.pay.contrib.apache.httpclient.exception.ValidationException;
 import com.wechat.pay.contrib.apache.httpclient.notification.Notification.Resource;
 import com.wechat.pay.contrib.apache.httpclient.util.AesUtil;
+import com.wechat.pay.contrib.apache.httpclient.util.EpochClock;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
@@ -18,19 +19,47 @@ import java.security.GeneralSecurityException;
 public class NotificationHandler {
 
     private final Verifier verifier;
-    private final byte[] apiV3Key;
+    /**
+     * 按APIv3密钥准备好的解密器，各通知共用
+     */
+    private final AesUtil aesUtil;
+    /**
+     * 检查通知时间戳所用的时钟，为null时不检查通知是否过期
+     */
+    private final EpochClock clock;
     private static final ObjectMapper objectMapper = new ObjectMapper();
+    /**
+     * 通知超时时间，单位为秒
+     */
+    private static final long NOTIFICATION_EXPIRED_SECONDS = 5 * 60;
 
 public NotificationHandler(Verifier verifier, byte[] apiV3Key) {
-    if (verifier == null) {
-        throw new IllegalArgumentException("verifier为空");
+    this(verifier, apiV3Key, null, false);
+}
+
+    /**
+     * 创建同时检查通知是否过期的NotificationHandler，请求携带的时间戳与当前时间相差5分钟及以上时拒绝该通知
+     *
+     * @param clock 检查通知时间戳是否过期所用的时钟，通常为{@link EpochClock#system()}
+     */
+    public NotificationHandler(Verifier verifier, byte[] apiV3Key, EpochClock clock) {
+        this(verifier, apiV3Key, clock, true);
     }
-    if (apiV3Key == null || apiV3Key.length == 0) {
-        throw new IllegalArgumentException("apiV3Key为空");
+
+    private NotificationHandler(Verifier verifier, byte[] apiV3Key, EpochClock clock, boolean rejectExpired) {
+        if (verifier == null) {
+            throw new IllegalArgumentException("verifier为空");
+        }
+        if (apiV3Key == null || apiV3Key.length == 0) {
+            throw new IllegalArgumentException("apiV3Key为空");
+        }
+        if (rejectExpired && clock == null) {
+            throw new IllegalArgumentException("clock为空");
+        }
+        this.verifier = verifier;
+        this.aesUtil = new AesUtil(apiV3Key);
+        this.clock = clock;
     }
-    this.verifier = verifier;
-    this.apiV3Key = apiV3Key;
-}
 
     /**
      * 解析微信支付通知请求结果
@@ -38,6 +67,7 @@ public NotificationHandler(Verifier verifier, byte[] apiV3Key) {
      * @param request 微信支付通知请求
      * @return 微信支付通知报文解密结果
      * @throws ValidationException 1.输入参数不合法 2.参数被篡改导致验签失败 3.请求和验证的平台证书不一致导致验签失败
+     * 4.指定了时钟时，通知已过期
      * @throws ParseException 1.解析请求体为Json失败 2.请求体无对应参数 3.AES解密失败
      */
     public Notification parse(Request request)
@@ -64,6 +94,7 @@ public NotificationHandler(Verifier verifier, byte[] apiV3Key) {
         if (signature == null || signature.isEmpty()) {
             throw new ValidationException("signature为空");
         }
+        validateTimestamp(request.getTimestamp());
         if (!verifier.verify(serialNumber, message, signature)) {
             String errorMessage = String
                     .format("验签失败：serial=[%s] message=[%s] sign=[%s]", serialNumber, new String(message), signature);
@@ -71,6 +102,22 @@ public NotificationHandler(Verifier verifier, byte[] apiV3Key) {
         }
     }
 
+    private void validateTimestamp(String timestamp) throws ValidationException {
+        if (clock == null || timestamp == null) {
+            return;
+        }
+        long notifyTime;
+        try {
+            notifyTime = Long.parseLong(timestamp);
+        } catch (NumberFormatException e) {
+            throw new ValidationException("timestamp不合法：" + timestamp);
+        }
+        // 拒绝过期通知
+        if (clock.isExpired(notifyTime, NOTIFICATION_EXPIRED_SECONDS)) {
+            throw new ValidationException("通知已过期：timestamp=" + timestamp);
+        }
+    }
+
     /**
      * 解析请求体
      *
@@ -159,7 +206,6 @@ public NotificationHandler(Verifier verifier, byte[] apiV3Key) {
         byte[] associatedData = getAssociateddData.getBytes(StandardCharsets.UTF_8);
         byte[] nonce = resource.getNonce().getBytes(StandardCharsets.UTF_8);
         String ciphertext = resource.getCiphertext();
-        AesUtil aesUtil = new AesUtil(apiV3Key);
         String decryptData;
         try {
             decryptData = aesUtil.decryptToString(associatedData, nonce, ciphertext);
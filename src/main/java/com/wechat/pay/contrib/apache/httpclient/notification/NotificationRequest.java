@@ -11,12 +11,15 @@ public class NotificationRequest implements Request {
     private final String signature;
     private final byte[] message;
     private final String body;
+    private final String timestamp;
 
-    private NotificationRequest(String serialNumber, String signature, byte[] message, String body) {
+    private NotificationRequest(String serialNumber, String signature, byte[] message, String body,
+            String timestamp) {
         this.serialNumber = serialNumber;
         this.signature = signature;
         this.message = message;
         this.body = body;
+        this.timestamp = timestamp;
     }
 
     @Override
@@ -39,6 +42,11 @@ public class NotificationRequest implements Request {
         return body;
     }
 
+    @Override
+    public String getTimestamp() {
+        return timestamp;
+    }
+
     public static class Builder {
 
         private String serialNumber;
@@ -77,7 +85,7 @@ public class NotificationRequest implements Request {
 
         public NotificationRequest build() {
             byte[] message = buildMessage();
-            return new NotificationRequest(serialNumber, signature, message, body);
+            return new NotificationRequest(serialNumber, signature, message, body, timestamp);
         }
 
         private byte[] buildMessage() {
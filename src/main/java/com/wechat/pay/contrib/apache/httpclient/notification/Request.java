@@ -34,4 +34,13 @@ public interface Request {
      * @return body
      */
     String getBody();
+
+    /**
+     * 获取请求头Wechatpay-Timestamp。返回null时不检查通知是否过期
+     *
+     * @return timestamp
+     */
+    default String getTimestamp() {
+        return null;
+    }
 }
@@ -0,0 +1,216 @@
+package com.wechat.pay.contrib.apache.httpclient.upload;
+
+import static org.apache.http.HttpStatus.SC_OK;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wechat.pay.contrib.apache.httpclient.WechatPayUploadHttpPost;
+import com.wechat.pay.contrib.apache.httpclient.exception.HttpCodeException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 批量上传图片/视频
+ *
+ * <p>每个文件由一个工作线程计算SHA-256并上传，同时进行的上传不超过并发数。上传结果按完成的先后顺序交给调用方，
+ * 调用方处理完一个结果后才会开始下一个文件的上传，处理较慢时上传随之放缓，不会堆积未处理的结果。
+ * 单个文件失败不影响其他文件，失败原因记录在对应的{@link UploadResult}中。
+ *
+ * <p>上传共用传入的HttpClient的连接池，连接池每个路由的最大连接数应不小于并发数。
+ * 微信支付的媒体上传接口不支持分片，每个文件以一个multipart请求整体上传，文件内容由FileChannel直接写出，不读入堆内存。
+ */
+public class MediaUploader implements Closeable {
+
+    public static final int DEFAULT_CONCURRENCY = 4;
+    private static final String UPLOAD_WORKER_THREAD_NAME = "media_upload_worker_";
+    private static final Logger log = LoggerFactory.getLogger(MediaUploader.class);
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final CloseableHttpClient httpClient;
+    private final URI uri;
+    private final int concurrency;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+
+    private MediaUploader(CloseableHttpClient httpClient, URI uri, int concurrency, Executor executor) {
+        this.httpClient = httpClient;
+        this.uri = uri;
+        this.concurrency = concurrency;
+        if (executor == null) {
+            this.ownedExecutor = newWorkerPool(concurrency);
+            this.executor = ownedExecutor;
+        } else {
+            this.ownedExecutor = null;
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * 上传一批文件，在调用线程上按完成顺序回调每个文件的结果，全部完成后返回
+     *
+     * @param files 待上传的文件
+     * @param listener 结果回调，抛出的异常会中止整批上传
+     * @throws InterruptedException 等待时被中断，尚未完成的上传会被取消
+     */
+    public void upload(Collection<Path> files, Consumer<UploadResult> listener) throws InterruptedException {
+        ExecutorCompletionService<UploadResult> completion = new ExecutorCompletionService<>(executor);
+        Deque<Path> pending = new ArrayDeque<>(files);
+        List<Future<UploadResult>> running = new ArrayList<>(concurrency);
+        try {
+            while (!pending.isEmpty() || !running.isEmpty()) {
+                while (running.size() < concurrency && !pending.isEmpty()) {
+                    Path file = pending.poll();
+                    running.add(completion.submit(() -> uploadFile(file)));
+                }
+                Future<UploadResult> done = completion.take();
+                running.remove(done);
+                listener.accept(getResult(done));
+            }
+        } finally {
+            for (Future<UploadResult> future : running) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * 上传一批文件，全部完成后按完成顺序返回结果
+     */
+    public List<UploadResult> uploadAll(Collection<Path> files) throws InterruptedException {
+        List<UploadResult> results = new ArrayList<>(files.size());
+        upload(files, results::add);
+        return results;
+    }
+
+    /**
+     * 在调用线程上传单个文件
+     */
+    public UploadResult upload(Path file) {
+        return uploadFile(file);
+    }
+
+    private UploadResult uploadFile(Path file) {
+        long start = System.currentTimeMillis();
+        try {
+            WechatPayUploadHttpPost request = new WechatPayUploadHttpPost.Builder(uri).withImage(file).build();
+            try (CloseableHttpResponse response = httpClient.execute(request)) {
+                int statusCode = response.getStatusLine().getStatusCode();
+                String body = EntityUtils.toString(response.getEntity());
+                if (statusCode != SC_OK) {
+                    log.error("Upload media failed, file = {}, statusCode = {}, body = {}", file, statusCode, body);
+                    throw new HttpCodeException("上传媒体文件返回状态码异常，状态码为:" + statusCode);
+                }
+                JsonNode mediaId = objectMapper.readTree(body).get("media_id");
+                if (mediaId == null || mediaId.asText().isEmpty()) {
+                    throw new IOException("上传媒体文件的应答中没有media_id");
+                }
+                return UploadResult.success(file, mediaId.asText(), System.currentTimeMillis() - start);
+            }
+        } catch (Exception e) {
+            return UploadResult.failure(file, e, System.currentTimeMillis() - start);
+        }
+    }
+
+    private static UploadResult getResult(Future<UploadResult> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // uploadFile已捕获Exception，这里只会是Error
+            throw new IllegalStateException("上传媒体文件时发生错误", e.getCause());
+        }
+    }
+
+    private static ThreadPoolExecutor newWorkerPool(int size) {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, UPLOAD_WORKER_THREAD_NAME + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        workers.allowCoreThreadTimeOut(true);
+        return workers;
+    }
+
+    /**
+     * 关闭内部创建的工作线程池。通过{@link Builder#withExecutor(Executor)}传入的线程池和HttpClient由调用方关闭
+     */
+    @Override
+    public void close() {
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdownNow();
+        }
+    }
+
+    public static class Builder {
+
+        private CloseableHttpClient httpClient;
+        private URI uri;
+        private int concurrency = DEFAULT_CONCURRENCY;
+        private Executor executor;
+
+        /**
+         * @param httpClient 由WechatPayHttpClientBuilder构造的HttpClient
+         */
+        public Builder withHttpClient(CloseableHttpClient httpClient) {
+            this.httpClient = httpClient;
+            return this;
+        }
+
+        /**
+         * @param uri 上传接口地址，如https://api.mch.weixin.qq.com/v3/merchant/media/upload
+         */
+        public Builder withUri(URI uri) {
+            this.uri = uri;
+            return this;
+        }
+
+        public Builder withConcurrency(int concurrency) {
+            if (concurrency <= 0) {
+                throw new IllegalArgumentException("并发数必须大于0");
+            }
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * 使用调用方提供的线程池执行上传，默认创建并发数大小的线程池
+         */
+        public Builder withExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public MediaUploader build() {
+            if (httpClient == null) {
+                throw new IllegalArgumentException("httpClient为空");
+            }
+            if (uri == null) {
+                throw new IllegalArgumentException("上传文件接口URL为空");
+            }
+            return new MediaUploader(httpClient, uri, concurrency, executor);
+        }
+    }
+}
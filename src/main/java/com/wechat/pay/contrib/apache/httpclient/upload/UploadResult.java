@@ -0,0 +1,66 @@
+package com.wechat.pay.contrib.apache.httpclient.upload;
+
+import java.nio.file.Path;
+
+/**
+ * 单个媒体文件的上传结果
+ *
+ * @see MediaUploader
+ */
+public class UploadResult {
+
+    private final Path file;
+    private final String mediaId;
+    private final Throwable error;
+    private final long elapsedMillis;
+
+    private UploadResult(Path file, String mediaId, Throwable error, long elapsedMillis) {
+        this.file = file;
+        this.mediaId = mediaId;
+        this.error = error;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    static UploadResult success(Path file, String mediaId, long elapsedMillis) {
+        return new UploadResult(file, mediaId, null, elapsedMillis);
+    }
+
+    static UploadResult failure(Path file, Throwable error, long elapsedMillis) {
+        return new UploadResult(file, null, error, elapsedMillis);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return 上传成功时返回的media_id，失败时为null
+     */
+    public String getMediaId() {
+        return mediaId;
+    }
+
+    /**
+     * @return 上传失败的原因，成功时为null
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return 计算摘要和上传的总耗时
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "UploadResult{file=" + file + ", mediaId=" + mediaId + ", error=" + error + ", elapsedMillis="
+                + elapsedMillis + '}';
+    }
+}
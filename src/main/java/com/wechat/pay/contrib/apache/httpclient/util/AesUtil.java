@@ -1,5 +1,8 @@
 package com.wechat.pay.contrib.apache.httpclient.util;
 
+import com.wechat.pay.contrib.apache.httpclient.jfr.DecryptEvent;
+import com.wechat.pay.contrib.apache.httpclient.jfr.WechatPayEvents;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
@@ -12,39 +15,161 @@ import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
 /**
+ * AEAD_AES_256_GCM加解密，用于回调通知和平台证书的密文
+ *
+ * <p>密钥在构造时准备好，Cipher在一个有界的池中复用，同一个实例可以被多个线程共用，应按APIv3密钥长期持有。
+ * 除Base64字符串外，也支持以byte[]或ByteBuffer输入输出，ByteBuffer可以由调用方复用以避免分配。
+ * 加密方法供测试和本地模拟微信支付使用。
+ *
  * @author xy-peng
  */
 public class AesUtil {
 
+    /**
+     * 密文末尾认证标签的字节数
+     */
+    public static final int TAG_LENGTH_BYTE = 16;
     private static final String TRANSFORMATION = "AES/GCM/NoPadding";
 
     private static final int KEY_LENGTH_BYTE = 32;
-    private static final int TAG_LENGTH_BIT = 128;
+    private static final int TAG_LENGTH_BIT = TAG_LENGTH_BYTE * 8;
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
 
-    private final byte[] aesKey;
+    private final SecretKeySpec key;
+    private final BoundedObjectPool<Cipher> ciphers = new BoundedObjectPool<>(AesUtil::newCipher, POOL_SIZE);
 
     public AesUtil(byte[] key) {
         if (key.length != KEY_LENGTH_BYTE) {
             throw new IllegalArgumentException("无效的ApiV3Key，长度必须为32个字节");
         }
-        this.aesKey = key;
+        this.key = new SecretKeySpec(key, "AES");
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     public String decryptToString(byte[] associatedData, byte[] nonce, String ciphertext)
             throws GeneralSecurityException {
+        DecryptEvent event = WechatPayEvents.beginDecrypt();
         try {
-            SecretKeySpec key = new SecretKeySpec(aesKey, "AES");
-            GCMParameterSpec spec = new GCMParameterSpec(TAG_LENGTH_BIT, nonce);
+            // 在Base64解码得到的数组上就地解密，不再为明文分配数组
+            byte[] buffer = Base64.getDecoder().decode(ciphertext);
+            Cipher cipher = borrow(Cipher.DECRYPT_MODE, associatedData, nonce);
+            int length = cipher.doFinal(buffer, 0, buffer.length, buffer, 0);
+            ciphers.release(cipher);
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        } finally {
+            commit(event, associatedData, ciphertext == null ? 0 : ciphertext.length());
+        }
+    }
 
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.DECRYPT_MODE, key, spec);
-            cipher.updateAAD(associatedData);
-            return new String(cipher.doFinal(Base64.getDecoder().decode(ciphertext)), StandardCharsets.UTF_8);
+    /**
+     * @param ciphertext 密文，末尾为认证标签
+     * @return 明文
+     */
+    public byte[] decrypt(byte[] associatedData, byte[] nonce, byte[] ciphertext) throws GeneralSecurityException {
+        DecryptEvent event = WechatPayEvents.beginDecrypt();
+        try {
+            Cipher cipher = borrow(Cipher.DECRYPT_MODE, associatedData, nonce);
+            byte[] plaintext = cipher.doFinal(ciphertext);
+            ciphers.release(cipher);
+            return plaintext;
+        } finally {
+            commit(event, associatedData, ciphertext.length);
+        }
+    }
 
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
-            throw new IllegalStateException(e);
-        } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+    /**
+     * 解密到调用方提供的缓冲区
+     *
+     * @param ciphertext 密文，读取position到limit之间的全部字节
+     * @param plaintext 明文写入的缓冲区，剩余空间须不小于密文长度减去{@link #TAG_LENGTH_BYTE}
+     * @return 写入的明文字节数
+     * @throws javax.crypto.ShortBufferException plaintext剩余空间不足
+     * @throws javax.crypto.AEADBadTagException 认证失败，密文或附加数据被篡改
+     */
+    public int decrypt(byte[] associatedData, byte[] nonce, ByteBuffer ciphertext, ByteBuffer plaintext)
+            throws GeneralSecurityException {
+        DecryptEvent event = WechatPayEvents.beginDecrypt();
+        int length = ciphertext.remaining();
+        try {
+            Cipher cipher = borrow(Cipher.DECRYPT_MODE, associatedData, nonce);
+            int written = cipher.doFinal(ciphertext, plaintext);
+            ciphers.release(cipher);
+            return written;
+        } finally {
+            commit(event, associatedData, length);
+        }
+    }
+
+    /**
+     * @return Base64编码的密文，格式与回调通知和平台证书中的ciphertext相同
+     */
+    public String encryptToString(byte[] associatedData, byte[] nonce, String plaintext)
+            throws GeneralSecurityException {
+        return Base64.getEncoder().encodeToString(
+                encrypt(associatedData, nonce, plaintext.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * GCM模式下同一密钥不得以相同的nonce加密不同的明文，nonce须由调用方保证唯一。
+     * Cipher在池中复用，只有取到的Cipher上次加密恰好使用了相同的nonce时才会抛出InvalidAlgorithmParameterException，
+     * 不能以此检测nonce的重复使用
+     *
+     * @return 密文，末尾为认证标签
+     */
+    public byte[] encrypt(byte[] associatedData, byte[] nonce, byte[] plaintext) throws GeneralSecurityException {
+        Cipher cipher = borrow(Cipher.ENCRYPT_MODE, associatedData, nonce);
+        byte[] ciphertext = cipher.doFinal(plaintext);
+        ciphers.release(cipher);
+        return ciphertext;
+    }
+
+    /**
+     * 加密到调用方提供的缓冲区
+     *
+     * @param plaintext 明文，读取position到limit之间的全部字节
+     * @param ciphertext 密文写入的缓冲区，剩余空间须不小于明文长度加上{@link #TAG_LENGTH_BYTE}
+     * @return 写入的密文字节数
+     * @throws javax.crypto.ShortBufferException ciphertext剩余空间不足
+     */
+    public int encrypt(byte[] associatedData, byte[] nonce, ByteBuffer plaintext, ByteBuffer ciphertext)
+            throws GeneralSecurityException {
+        Cipher cipher = borrow(Cipher.ENCRYPT_MODE, associatedData, nonce);
+        int written = cipher.doFinal(plaintext, ciphertext);
+        ciphers.release(cipher);
+        return written;
+    }
+
+    /**
+     * 从池中取出Cipher并完成初始化。出错的Cipher状态未知，调用方不应归还
+     *
+     * @throws InvalidAlgorithmParameterException nonce无效，或加密时该Cipher上次加密使用了相同的nonce（尽力而为，不保证发现）
+     */
+    private Cipher borrow(int mode, byte[] associatedData, byte[] nonce) throws InvalidAlgorithmParameterException {
+        GCMParameterSpec spec = new GCMParameterSpec(TAG_LENGTH_BIT, nonce);
+        Cipher cipher = ciphers.borrow();
+        try {
+            cipher.init(mode, key, spec);
+        } catch (InvalidKeyException e) {
             throw new IllegalArgumentException(e);
         }
+        if (associatedData != null) {
+            cipher.updateAAD(associatedData);
+        }
+        return cipher;
+    }
+
+    private static void commit(DecryptEvent event, byte[] associatedData, long ciphertextSize) {
+        if (event != null) {
+            event.associatedData = associatedData == null ? null : new String(associatedData, StandardCharsets.UTF_8);
+            event.ciphertextSize = ciphertextSize;
+            event.commit();
+        }
     }
 }
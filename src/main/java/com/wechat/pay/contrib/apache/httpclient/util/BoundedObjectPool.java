@@ -0,0 +1,70 @@
+package com.wechat.pay.contrib.apache.httpclient.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 有界对象池，用于复用创建代价较高且非线程安全的对象，例如已初始化的Signature
+ *
+ * <p>对象不与线程绑定：借出时从池中取出，归还时放回，池空时新建，池满时丢弃。
+ * 因此在平台线程池和虚拟线程下，池中对象的数量都不会超过容量。
+ *
+ * @param <T> 池化对象的类型
+ */
+public final class BoundedObjectPool<T> {
+
+    private final ConcurrentLinkedQueue<T> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final Supplier<T> factory;
+    private final int capacity;
+
+    public BoundedObjectPool(Supplier<T> factory, int capacity) {
+        if (factory == null) {
+            throw new IllegalArgumentException("factory为空");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity必须大于0");
+        }
+        this.factory = factory;
+        this.capacity = capacity;
+    }
+
+    /**
+     * 借出一个对象，池为空时新建
+     *
+     * @return 池化对象
+     */
+    public T borrow() {
+        T object = idle.poll();
+        if (object == null) {
+            return factory.get();
+        }
+        idleCount.decrementAndGet();
+        return object;
+    }
+
+    /**
+     * 归还对象。对象必须处于可被下一个使用者直接使用的状态，否则不应归还
+     *
+     * @param object 池化对象
+     */
+    public void release(T object) {
+        if (object == null) {
+            return;
+        }
+        if (idleCount.incrementAndGet() > capacity) {
+            idleCount.decrementAndGet();
+            return;
+        }
+        idle.offer(object);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+}
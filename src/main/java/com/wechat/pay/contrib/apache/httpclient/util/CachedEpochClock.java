@@ -0,0 +1,52 @@
+package com.wechat.pay.contrib.apache.httpclient.util;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 粗粒度的缓存时钟
+ *
+ * <p>由一个后台守护线程定期刷新当前秒数，读取时只有一次volatile读，适合签名和验签这类热点路径。
+ * 读到的值最多比系统时间落后一个刷新间隔，相对于签名时间戳5分钟的有效期可以忽略。
+ * 后台线程在第一次调用{@link #getInstance()}时启动。
+ */
+public final class CachedEpochClock implements EpochClock {
+
+    private static final long TICK_MILLIS = 100;
+    private static final String TICK_THREAD_NAME = "wechatpay_epoch_clock";
+
+    private volatile long epochSeconds = System.currentTimeMillis() / 1000;
+
+    private CachedEpochClock() {
+    }
+
+    public static CachedEpochClock getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    @Override
+    public long currentEpochSeconds() {
+        return epochSeconds;
+    }
+
+    private void tick() {
+        epochSeconds = System.currentTimeMillis() / 1000;
+    }
+
+    private static class Holder {
+
+        private static final CachedEpochClock INSTANCE = start();
+
+        private static CachedEpochClock start() {
+            CachedEpochClock clock = new CachedEpochClock();
+            ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, TICK_THREAD_NAME);
+                thread.setDaemon(true);
+                return thread;
+            });
+            ticker.scheduleAtFixedRate(clock::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+            return clock;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.wechat.pay.contrib.apache.httpclient.util;
+
+/**
+ * 以秒为单位的Unix时间戳来源，用于生成请求签名的时间戳和检查应答、通知是否过期
+ *
+ * @see CachedEpochClock
+ * @see ManualEpochClock
+ */
+@FunctionalInterface
+public interface EpochClock {
+
+    /**
+     * @return 当前的Unix时间戳，单位为秒
+     */
+    long currentEpochSeconds();
+
+    /**
+     * @return 每次读取系统时间的时钟
+     */
+    static EpochClock system() {
+        return SystemEpochClock.INSTANCE;
+    }
+
+    /**
+     * 当前时间与时间戳相差是否达到指定的秒数，任一方向均算
+     *
+     * @param epochSeconds 待检查的时间戳
+     * @param maxSkewSeconds 允许的最大时间差（不含）
+     * @return 达到或超过时返回true
+     */
+    default boolean isExpired(long epochSeconds, long maxSkewSeconds) {
+        long now = currentEpochSeconds();
+        long skew = epochSeconds > now ? epochSeconds - now : now - epochSeconds;
+        // 差值溢出时为负数，同样视为过期
+        return skew < 0 || skew >= maxSkewSeconds;
+    }
+
+    enum SystemEpochClock implements EpochClock {
+        INSTANCE;
+
+        @Override
+        public long currentEpochSeconds() {
+            return System.currentTimeMillis() / 1000;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.wechat.pay.contrib.apache.httpclient.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 由调用方设置时间的时钟，用于测试时间戳过期等与时间相关的逻辑
+ */
+public final class ManualEpochClock implements EpochClock {
+
+    private final AtomicLong epochSeconds;
+
+    public ManualEpochClock(long epochSeconds) {
+        this.epochSeconds = new AtomicLong(epochSeconds);
+    }
+
+    @Override
+    public long currentEpochSeconds() {
+        return epochSeconds.get();
+    }
+
+    public void set(long epochSeconds) {
+        this.epochSeconds.set(epochSeconds);
+    }
+
+    /**
+     * @param seconds 前进的秒数，可以为负数
+     */
+    public void advance(long seconds) {
+        epochSeconds.addAndGet(seconds);
+    }
+}
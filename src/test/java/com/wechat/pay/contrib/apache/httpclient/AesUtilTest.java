@@ -0,0 +1,77 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.wechat.pay.contrib.apache.httpclient.util.AesUtil;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.Test;
+
+public class AesUtilTest {
+
+    private static final byte[] apiV3Key = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] associatedData = "transaction".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] nonce = "fdasflkja484".getBytes(StandardCharsets.US_ASCII);
+    private static final String plaintext = "{\"description\":\"Image形象店-深圳腾大-QQ公仔\"}";
+
+    @Test
+    public void decryptToStringMatchesJce() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(apiV3Key, "AES"), new GCMParameterSpec(128, nonce));
+        cipher.updateAAD(associatedData);
+        String ciphertext = Base64.getEncoder().encodeToString(
+                cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8)));
+
+        AesUtil aesUtil = new AesUtil(apiV3Key);
+        assertEquals(ciphertext, aesUtil.encryptToString(associatedData, nonce, plaintext));
+        // 重复解密复用池中的Cipher
+        for (int i = 0; i < 3; i++) {
+            assertEquals(plaintext, aesUtil.decryptToString(associatedData, nonce, ciphertext));
+        }
+    }
+
+    @Test
+    public void byteArrayAndBufferRoundTrip() throws Exception {
+        AesUtil aesUtil = new AesUtil(apiV3Key);
+        byte[] message = plaintext.getBytes(StandardCharsets.UTF_8);
+        byte[] ciphertext = aesUtil.encrypt(associatedData, nonce, message);
+        assertEquals(message.length + AesUtil.TAG_LENGTH_BYTE, ciphertext.length);
+        assertArrayEquals(message, aesUtil.decrypt(associatedData, nonce, ciphertext));
+
+        byte[] bufferNonce = "fdasflkja485".getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer encrypted = ByteBuffer.allocateDirect(ciphertext.length);
+        assertEquals(ciphertext.length,
+                aesUtil.encrypt(associatedData, bufferNonce, ByteBuffer.wrap(message), encrypted));
+        encrypted.flip();
+        ByteBuffer decrypted = ByteBuffer.allocate(64 + message.length);
+        decrypted.position(64);
+        assertEquals(message.length, aesUtil.decrypt(associatedData, bufferNonce, encrypted, decrypted));
+        byte[] actual = new byte[message.length];
+        decrypted.flip().position(64);
+        decrypted.get(actual);
+        assertArrayEquals(message, actual);
+    }
+
+    @Test
+    public void tamperedCiphertextIsRejected() throws Exception {
+        AesUtil aesUtil = new AesUtil(apiV3Key);
+        byte[] ciphertext = aesUtil.encrypt(associatedData, nonce, plaintext.getBytes(StandardCharsets.UTF_8));
+        ciphertext[0] ^= 1;
+        try {
+            aesUtil.decrypt(associatedData, nonce, ciphertext);
+            fail();
+        } catch (AEADBadTagException e) {
+            // 期望的认证失败
+        }
+        ciphertext[0] ^= 1;
+        assertEquals(plaintext, new String(aesUtil.decrypt(associatedData, nonce, ciphertext),
+                StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,141 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.wechat.pay.contrib.apache.httpclient.auth.AutoUpdateCertificatesVerifier;
+import com.wechat.pay.contrib.apache.httpclient.auth.CertificatesVerifier;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.CertificateException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+@Deprecated
+public class BackgroundRefreshVerifierTest {
+
+    private static final byte[] message = "1554208460\nnonce\n{}\n".getBytes(StandardCharsets.UTF_8);
+    private static final AtomicInteger downloads = new AtomicInteger();
+    private static final AtomicInteger attempts = new AtomicInteger();
+    private static volatile boolean failing;
+    private static SelfSignedCertificate certificate;
+    private StubVerifier verifier;
+
+    @BeforeClass
+    public static void setupClass() throws Exception {
+        certificate = SelfSignedCertificate.generate(BigInteger.valueOf(0x1234));
+    }
+
+    @After
+    public void after() {
+        if (verifier != null) {
+            verifier.stop();
+        }
+    }
+
+    @Test
+    public void requestThreadNeverDownloads() throws Exception {
+        downloads.set(0);
+        verifier = new StubVerifier(60, 120);
+        assertEquals(1, downloads.get());
+        assertFalse(verifier.isStale());
+
+        // 超过更新间隔但未超过最大陈旧时间：不触发下载
+        verifier.setLastUpdateTime(Instant.now().minusSeconds(TimeUnit.MINUTES.toSeconds(90)));
+        assertTrue(verifier.verify(certificate.getSerialNumber(), message, certificate.sign(message)));
+        assertEquals(1, downloads.get());
+    }
+
+    @Test
+    public void staleCertificatesRefreshInBackground() throws Exception {
+        downloads.set(0);
+        verifier = new StubVerifier(60, 120);
+        verifier.setLastUpdateTime(Instant.now().minusSeconds(TimeUnit.MINUTES.toSeconds(180)));
+        assertTrue(verifier.isStale());
+
+        assertTrue(verifier.verify(certificate.getSerialNumber(), message, certificate.sign(message)));
+        for (int i = 0; i < 100 && verifier.isStale(); i++) {
+            Thread.sleep(20);
+        }
+        assertFalse(verifier.isStale());
+        assertEquals(2, downloads.get());
+        assertEquals(0, verifier.getRefreshFailureCount());
+    }
+
+    @Test
+    public void failedRefreshKeepsLastUpdateTime() throws Exception {
+        failing = false;
+        verifier = new StubVerifier(60, 120);
+        Instant lastUpdateTime = Instant.now().minusSeconds(TimeUnit.MINUTES.toSeconds(180));
+        verifier.setLastUpdateTime(lastUpdateTime);
+
+        failing = true;
+        try {
+            assertFalse(verifier.refreshNow());
+        } finally {
+            failing = false;
+        }
+        assertEquals(lastUpdateTime, verifier.getLastUpdateTime());
+        assertEquals(1, verifier.getRefreshFailureCount());
+        assertTrue(verifier.isStale());
+
+        assertTrue(verifier.refreshNow());
+        assertFalse(verifier.isStale());
+        assertEquals(1, verifier.getRefreshFailureCount());
+    }
+
+    @Test
+    public void failedSyncRefreshIsRetriedOncePerInterval() throws Exception {
+        failing = false;
+        verifier = new StubVerifier(60);
+        verifier.setLastUpdateTime(Instant.now().minusSeconds(TimeUnit.MINUTES.toSeconds(90)));
+
+        attempts.set(0);
+        failing = true;
+        try {
+            // 更新失败后继续使用原有证书验签，一分钟内只尝试下载一次
+            for (int i = 0; i < 10; i++) {
+                assertTrue(verifier.verify(certificate.getSerialNumber(), message, certificate.sign(message)));
+            }
+        } finally {
+            failing = false;
+        }
+        assertEquals(1, attempts.get());
+        assertEquals(1, verifier.getRefreshFailureCount());
+    }
+
+    private static class StubVerifier extends AutoUpdateCertificatesVerifier {
+
+        StubVerifier(long minutesInterval) {
+            super(null, new byte[32], minutesInterval);
+        }
+
+        StubVerifier(long minutesInterval, long maxStalenessMinutes) {
+            super(null, new byte[32], minutesInterval, maxStalenessMinutes);
+        }
+
+        void setLastUpdateTime(Instant lastUpdateTime) {
+            this.lastUpdateTime = lastUpdateTime;
+        }
+
+        boolean refreshNow() {
+            return refresh();
+        }
+
+        @Override
+        protected void autoUpdateCert() throws CertificateException {
+            attempts.incrementAndGet();
+            if (failing) {
+                throw new CertificateException("平台证书列表为空");
+            }
+            downloads.incrementAndGet();
+            verifier = new CertificatesVerifier(Collections.singletonList(certificate.getCertificate()));
+        }
+    }
+}
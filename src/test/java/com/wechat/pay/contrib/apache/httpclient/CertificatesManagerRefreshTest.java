@@ -0,0 +1,361 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.wechat.pay.contrib.apache.httpclient.auth.Verifier;
+import com.wechat.pay.contrib.apache.httpclient.cert.BatchResult;
+import com.wechat.pay.contrib.apache.httpclient.cert.CertificateDownloader;
+import com.wechat.pay.contrib.apache.httpclient.cert.CertificatesManager;
+import com.wechat.pay.contrib.apache.httpclient.cert.FileCertificateCache;
+import com.wechat.pay.contrib.apache.httpclient.cert.MerchantRegistration;
+import com.wechat.pay.contrib.apache.httpclient.exception.HttpCodeException;
+import java.lang.reflect.Constructor;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CertificatesManagerRefreshTest {
+
+    private static final int MERCHANT_COUNT = 6;
+    private static final byte[] apiV3Key = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+    private static final List<String> merchantIds = new ArrayList<>();
+    private static final List<Credentials> credentials = new ArrayList<>();
+    private static CertificatesManager certificatesManager;
+    private static StubCertificateDownloader downloader;
+    private static SelfSignedCertificate certificate;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setupClass() throws Exception {
+        certificatesManager = CertificatesManager.getInstance();
+        downloader = new StubCertificateDownloader(20);
+        certificatesManager.setCertificateDownloader(downloader);
+        certificate = SelfSignedCertificate.generate(BigInteger.valueOf(0x5678));
+        for (int i = 0; i < MERCHANT_COUNT; i++) {
+            String merchantId = "refresh-" + UUID.randomUUID();
+            Credentials merchantCredentials = new StubCredentials();
+            downloader.register(merchantCredentials, apiV3Key, certificate);
+            certificatesManager.putMerchant(merchantId, merchantCredentials, apiV3Key);
+            merchantIds.add(merchantId);
+            credentials.add(merchantCredentials);
+        }
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        downloader.setFailing(credentials.get(0), false);
+        certificatesManager.setRefreshConcurrency(4);
+        certificatesManager.setRefreshRateLimit(0);
+        certificatesManager.setCertificateDownloader(new CertificateDownloader.Builder().build());
+    }
+
+    @Test
+    public void refreshIsParallelAndBounded() throws Exception {
+        certificatesManager.setRefreshConcurrency(2);
+        certificatesManager.setRefreshRateLimit(0);
+        downloader.setFailing(credentials.get(0), true);
+        downloader.resetMaxRunning();
+        try {
+            BatchResult result = certificatesManager.refreshCertificates();
+            assertTrue(result.getSucceeded().containsAll(merchantIds.subList(1, MERCHANT_COUNT)));
+            assertTrue(result.getFailures().containsKey(merchantIds.get(0)));
+            assertNotNull(result.getDurations().get(merchantIds.get(0)));
+            assertTrue(result.getTotal() >= MERCHANT_COUNT);
+            assertEquals(result, certificatesManager.getLastRefreshResult());
+            assertTrue(downloader.getMaxRunning() <= 2);
+        } finally {
+            downloader.setFailing(credentials.get(0), false);
+        }
+        // 下载失败时保留原有证书
+        for (String merchantId : merchantIds) {
+            assertNotNull(certificatesManager.getVerifier(merchantId).getValidPublicKey());
+        }
+    }
+
+    @Test
+    public void refreshIsRateLimited() {
+        certificatesManager.setRefreshConcurrency(MERCHANT_COUNT);
+        certificatesManager.setRefreshRateLimit(20);
+        BatchResult result = certificatesManager.refreshCertificates();
+        assertTrue(result.isAllSucceeded());
+        // 每秒20次，发起MERCHANT_COUNT次下载至少需要(MERCHANT_COUNT - 1) * 50ms
+        assertTrue(result.getElapsed().toMillis() >= (MERCHANT_COUNT - 1) * 50L - 10);
+    }
+
+    @Test
+    public void concurrentRegistrationsAreMerged() throws Exception {
+        String merchantId = "async-" + UUID.randomUUID();
+        Credentials merchantCredentials = new StubCredentials();
+        downloader.register(merchantCredentials, apiV3Key, certificate);
+        int downloads = downloader.getDownloads();
+
+        CompletableFuture<Verifier> first = certificatesManager.putMerchantAsync(merchantId, merchantCredentials,
+                apiV3Key);
+        CompletableFuture<Verifier> second = certificatesManager.putMerchantAsync(merchantId, merchantCredentials,
+                apiV3Key);
+        assertSame(first, second);
+        assertEquals(certificate.getSerialNumber(), first.get(10, TimeUnit.SECONDS).getSerialNumber());
+        assertEquals(downloads + 1, downloader.getDownloads());
+    }
+
+    @Test
+    public void registrationWithNewCredentialsIsNotMerged() throws Exception {
+        String merchantId = "async-" + UUID.randomUUID();
+        Credentials oldCredentials = new StubCredentials();
+        Credentials newCredentials = new StubCredentials();
+        SelfSignedCertificate rotated = SelfSignedCertificate.generate(BigInteger.valueOf(0x6789));
+        downloader.register(oldCredentials, apiV3Key, certificate);
+        downloader.register(newCredentials, apiV3Key, rotated);
+        int downloads = downloader.getDownloads();
+
+        CompletableFuture<Verifier> first = certificatesManager.putMerchantAsync(merchantId, oldCredentials,
+                apiV3Key);
+        CompletableFuture<Verifier> second = certificatesManager.putMerchantAsync(merchantId, newCredentials,
+                apiV3Key);
+        assertNotSame(first, second);
+        first.get(10, TimeUnit.SECONDS);
+        // 后一次注册在前一次完成后执行，最终使用新的认证器
+        assertEquals(rotated.getSerialNumber(), second.get(10, TimeUnit.SECONDS).getSerialNumber());
+        assertEquals(downloads + 2, downloader.getDownloads());
+
+        downloader.setFailing(oldCredentials, true);
+        try {
+            assertTrue(certificatesManager.refreshCertificates().getSucceeded().contains(merchantId));
+        } finally {
+            downloader.setFailing(oldCredentials, false);
+        }
+    }
+
+    @Test
+    public void registrationDoesNotQueueBehindRefresh() throws Exception {
+        StubCertificateDownloader slowDownloader = new StubCertificateDownloader(200);
+        for (Credentials merchantCredentials : credentials) {
+            slowDownloader.register(merchantCredentials, apiV3Key, certificate);
+        }
+        String merchantId = "async-" + UUID.randomUUID();
+        Credentials merchantCredentials = new StubCredentials();
+        slowDownloader.register(merchantCredentials, apiV3Key, certificate);
+        downloader.register(merchantCredentials, apiV3Key, certificate);
+        certificatesManager.setCertificateDownloader(slowDownloader);
+        certificatesManager.setRefreshConcurrency(1);
+        certificatesManager.setRefreshRateLimit(0);
+        CompletableFuture<BatchResult> refresh = CompletableFuture.supplyAsync(
+                certificatesManager::refreshCertificates);
+        try {
+            Thread.sleep(50);
+            // 更新证书的线程池被重建时，注册不会被拒绝
+            certificatesManager.setRefreshConcurrency(2);
+            long start = System.nanoTime();
+            CompletableFuture<Verifier> future = certificatesManager.putMerchantAsync(merchantId,
+                    merchantCredentials, apiV3Key);
+            assertEquals(certificate.getSerialNumber(), future.get(10, TimeUnit.SECONDS).getSerialNumber());
+            // 整批更新需要MERCHANT_COUNT * 200ms，注册最多等待正在进行的下载
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < MERCHANT_COUNT * 200L);
+        } finally {
+            refresh.get(30, TimeUnit.SECONDS);
+            certificatesManager.setCertificateDownloader(downloader);
+        }
+    }
+
+    @Test
+    public void failedRegistrationCompletesExceptionally() throws Exception {
+        String merchantId = "async-" + UUID.randomUUID();
+        CompletableFuture<Verifier> future = certificatesManager.putMerchantAsync(merchantId, new StubCredentials(),
+                apiV3Key);
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof HttpCodeException);
+        }
+        try {
+            certificatesManager.putMerchant(merchantId, new StubCredentials(), apiV3Key);
+            fail();
+        } catch (HttpCodeException expected) {
+            // putMerchant抛出与异步注册相同的异常
+        }
+    }
+
+    @Test
+    public void putMerchantsReportsFailures() throws Exception {
+        certificatesManager.setRefreshRateLimit(0);
+        List<MerchantRegistration> merchants = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Credentials merchantCredentials = new StubCredentials();
+            downloader.register(merchantCredentials, apiV3Key, certificate);
+            merchants.add(new MerchantRegistration("bulk-" + UUID.randomUUID(), merchantCredentials, apiV3Key));
+        }
+        // 未登记证书的商户下载失败，空商户号校验失败，均不影响其他商户
+        String unknown = "bulk-" + UUID.randomUUID();
+        merchants.add(new MerchantRegistration(unknown, new StubCredentials(), apiV3Key));
+        merchants.add(new MerchantRegistration("", new StubCredentials(), apiV3Key));
+        downloader.resetMaxRunning();
+
+        BatchResult result = certificatesManager.putMerchants(merchants, 3);
+        assertEquals(8, result.getSucceeded().size());
+        assertEquals(2, result.getFailures().size());
+        assertTrue(result.getFailures().get(unknown) instanceof HttpCodeException);
+        assertTrue(result.getFailures().get("") instanceof IllegalArgumentException);
+        assertEquals(10, result.getDurations().size());
+        assertTrue(downloader.getMaxRunning() <= 3);
+        for (MerchantRegistration merchant : merchants.subList(0, 8)) {
+            assertEquals(certificate.getSerialNumber(),
+                    certificatesManager.getVerifier(merchant.getMerchantId()).getSerialNumber());
+        }
+    }
+
+    @Test
+    public void putMerchantsIsBoundedByRefreshConcurrency() throws Exception {
+        certificatesManager.setRefreshConcurrency(2);
+        certificatesManager.setRefreshRateLimit(0);
+        List<MerchantRegistration> merchants = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Credentials merchantCredentials = new StubCredentials();
+            downloader.register(merchantCredentials, apiV3Key, certificate);
+            merchants.add(new MerchantRegistration("bulk-" + UUID.randomUUID(), merchantCredentials, apiV3Key));
+        }
+        downloader.resetMaxRunning();
+
+        BatchResult result = certificatesManager.putMerchants(merchants, 6);
+        assertTrue(result.isAllSucceeded());
+        assertEquals(6, result.getTotal());
+        assertTrue(downloader.getMaxRunning() <= 2);
+    }
+
+    @Test
+    public void putMerchantsRejectsInvalidElements() {
+        MerchantRegistration merchant = new MerchantRegistration("bulk-" + UUID.randomUUID(), new StubCredentials(),
+                apiV3Key);
+        int downloads = downloader.getDownloads();
+        for (List<MerchantRegistration> merchants : Arrays.asList(Arrays.asList(merchant, null),
+                Arrays.asList(merchant, new MerchantRegistration(null, new StubCredentials(), apiV3Key)),
+                Arrays.asList(merchant, merchant))) {
+            try {
+                certificatesManager.putMerchants(merchants, 2);
+                fail();
+            } catch (IllegalArgumentException expected) {
+                // 在开始下载之前拒绝
+            }
+        }
+        assertEquals(downloads, downloader.getDownloads());
+    }
+
+    @Test
+    public void putMerchantWorksAfterStop() throws Exception {
+        CertificatesManager stopped = newCertificatesManager();
+        StubCertificateDownloader stubDownloader = new StubCertificateDownloader(0);
+        stopped.setCertificateDownloader(stubDownloader);
+        Credentials merchantCredentials = new StubCredentials();
+        stubDownloader.register(merchantCredentials, apiV3Key, certificate);
+        stopped.putMerchant("stopped-" + UUID.randomUUID(), merchantCredentials, apiV3Key);
+        stopped.stop();
+
+        String merchantId = "stopped-" + UUID.randomUUID();
+        stopped.putMerchant(merchantId, merchantCredentials, apiV3Key);
+        assertEquals(certificate.getSerialNumber(), stopped.getVerifier(merchantId).getSerialNumber());
+        try {
+            stopped.putMerchantAsync("stopped-" + UUID.randomUUID(), merchantCredentials, apiV3Key)
+                    .get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    public void refreshAfterStopReportsFailures() throws Exception {
+        CertificatesManager stopped = newCertificatesManager();
+        StubCertificateDownloader stubDownloader = new StubCertificateDownloader(0);
+        stopped.setCertificateDownloader(stubDownloader);
+        Credentials merchantCredentials = new StubCredentials();
+        stubDownloader.register(merchantCredentials, apiV3Key, certificate);
+        String merchantId = "stopped-" + UUID.randomUUID();
+        stopped.putMerchant(merchantId, merchantCredentials, apiV3Key);
+        // 等待注册后立即开始的首次定时更新结束，避免其结果覆盖下面的结果
+        for (int i = 0; i < 100 && stopped.getLastRefreshResult() == null; i++) {
+            Thread.sleep(20);
+        }
+        stopped.stop();
+
+        BatchResult result = stopped.refreshCertificates();
+        assertTrue(result.getFailures().get(merchantId) instanceof RejectedExecutionException);
+        assertEquals(1, result.getTotal());
+        assertEquals(result, stopped.getLastRefreshResult());
+    }
+
+    @Test
+    public void putMerchantServesCachedCertificates() throws Exception {
+        FileCertificateCache cache = new FileCertificateCache(folder.getRoot().toPath());
+        String merchantId = "cached-" + UUID.randomUUID();
+        SelfSignedCertificate cached = SelfSignedCertificate.generate(BigInteger.valueOf(0x9abc));
+        cache.store(merchantId, apiV3Key, Collections.singletonList(cached.getCertificate()));
+
+        StubCertificateDownloader slowDownloader = new StubCertificateDownloader(500);
+        Credentials merchantCredentials = new StubCredentials();
+        slowDownloader.register(merchantCredentials, apiV3Key, certificate);
+        downloader.register(merchantCredentials, apiV3Key, certificate);
+        certificatesManager.setCertificateDownloader(slowDownloader);
+        certificatesManager.setCertificateCache(cache);
+        try {
+            long start = System.nanoTime();
+            certificatesManager.putMerchant(merchantId, merchantCredentials, apiV3Key);
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+            Verifier verifier = certificatesManager.getVerifier(merchantId);
+            assertEquals(cached.getSerialNumber(), verifier.getSerialNumber());
+
+            // 后台下载完成后使用最新的证书，并写回缓存
+            for (int i = 0; i < 100 && !certificate.getCertificate()
+                    .equals(cache.load(merchantId, apiV3Key).iterator().next()); i++) {
+                Thread.sleep(20);
+            }
+            assertEquals(certificate.getSerialNumber(), verifier.getSerialNumber());
+            assertEquals(certificate.getCertificate(), cache.load(merchantId, apiV3Key).iterator().next());
+        } finally {
+            certificatesManager.setCertificateCache(null);
+            certificatesManager.setCertificateDownloader(downloader);
+        }
+    }
+
+    /**
+     * 使用单独的实例，不影响其他测试共用的单例
+     */
+    private static CertificatesManager newCertificatesManager() throws Exception {
+        Constructor<CertificatesManager> constructor = CertificatesManager.class.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        return constructor.newInstance();
+    }
+
+    private static class StubCredentials implements Credentials {
+
+        @Override
+        public String getSchema() {
+            return "WECHATPAY2-SHA256-RSA2048";
+        }
+
+        @Override
+        public String getToken(HttpRequestWrapper request) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.wechat.pay.contrib.apache.httpclient.auth.CertificateIndex;
+import com.wechat.pay.contrib.apache.httpclient.auth.CertificatesVerifier;
+import com.wechat.pay.contrib.apache.httpclient.auth.PublicKeyVerifier;
+import com.wechat.pay.contrib.apache.httpclient.auth.Verifier;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class CertificatesVerifierTest {
+
+    private static final byte[] message = "1554208460\nnonce\n{\"code\":\"SUCCESS\"}\n"
+            .getBytes(StandardCharsets.UTF_8);
+    private static SelfSignedCertificate first;
+    private static SelfSignedCertificate second;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        first = SelfSignedCertificate.generate(new BigInteger("5157F09EFDC096DE15EBE81A47057A72", 16));
+        second = SelfSignedCertificate.generate(new BigInteger("0A2B3C", 16));
+    }
+
+    @Test
+    public void verifyBySerialNumber() throws Exception {
+        Verifier verifier = new CertificatesVerifier(Arrays.asList(first.getCertificate(), second.getCertificate()));
+        String signature = first.sign(message);
+
+        assertTrue(verifier.verify(first.getSerialNumber(), message, signature));
+        // 小写或带前导零的序列号同样可以找到证书
+        assertTrue(verifier.verify(first.getSerialNumber().toLowerCase(), message, signature));
+        assertTrue(verifier.verify("00" + first.getSerialNumber(), message, signature));
+        assertFalse(verifier.verify(second.getSerialNumber(), message, signature));
+        assertFalse(verifier.verify("FFFF", message, signature));
+        assertFalse(verifier.verify("not-a-serial", message, signature));
+    }
+
+    @Test
+    public void verifyRepeatedly() throws Exception {
+        Verifier verifier = new CertificatesVerifier(Collections.singletonList(second.getCertificate()));
+        for (int i = 0; i < 5; i++) {
+            byte[] current = ("message-" + i).getBytes(StandardCharsets.UTF_8);
+            assertTrue(verifier.verify(second.getSerialNumber(), current, second.sign(current)));
+            assertFalse(verifier.verify(second.getSerialNumber(), message, second.sign(current)));
+        }
+    }
+
+    @Test
+    public void verifyThroughOverriddenCertificateHook() throws Exception {
+        List<X509Certificate> verified = new ArrayList<>();
+        Verifier verifier = new CertificatesVerifier(Collections.singletonList(first.getCertificate())) {
+            @Override
+            protected boolean verify(X509Certificate certificate, byte[] message, String signature) {
+                verified.add(certificate);
+                return super.verify(certificate, message, signature);
+            }
+        };
+        String signature = first.sign(message);
+
+        assertTrue(verifier.verify(first.getSerialNumber(), message, signature));
+        // 流式验签同样经由子类的实现
+        assertTrue(verifier.verify(first.getSerialNumber(), out -> out.write(message), signature));
+        assertEquals(Arrays.asList(first.getCertificate(), first.getCertificate()), verified);
+    }
+
+    @Test
+    public void verifyWithPublicKey() throws Exception {
+        Verifier verifier = new PublicKeyVerifier("PUB_KEY_ID_0000", first.getCertificate().getPublicKey());
+        assertTrue(verifier.verify("PUB_KEY_ID_0000", message, first.sign(message)));
+        assertFalse(verifier.verify("PUB_KEY_ID_0000", message, second.sign(message)));
+    }
+
+    @Test
+    public void serialNumberOfLatestCertificate() throws Exception {
+        long now = System.currentTimeMillis();
+        SelfSignedCertificate older = SelfSignedCertificate.generate(BigInteger.valueOf(1),
+                new Date(now - TimeUnit.DAYS.toMillis(2)), new Date(now + TimeUnit.DAYS.toMillis(1)));
+        SelfSignedCertificate newer = SelfSignedCertificate.generate(BigInteger.valueOf(2),
+                new Date(now - TimeUnit.DAYS.toMillis(1)), new Date(now + TimeUnit.DAYS.toMillis(1)));
+        CertificatesVerifier verifier = new CertificatesVerifier(
+                Arrays.asList(older.getCertificate(), newer.getCertificate()));
+        assertEquals("2", verifier.getSerialNumber());
+        assertEquals(newer.getCertificate(), verifier.getValidCertificate());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void expiredLatestCertificate() throws Exception {
+        long now = System.currentTimeMillis();
+        SelfSignedCertificate older = SelfSignedCertificate.generate(BigInteger.valueOf(1),
+                new Date(now - TimeUnit.DAYS.toMillis(2)), new Date(now + TimeUnit.DAYS.toMillis(1)));
+        SelfSignedCertificate expired = SelfSignedCertificate.generate(BigInteger.valueOf(2),
+                new Date(now - TimeUnit.DAYS.toMillis(1)), new Date(now - TimeUnit.HOURS.toMillis(1)));
+        new CertificatesVerifier(Arrays.asList(older.getCertificate(), expired.getCertificate())).getSerialNumber();
+    }
+
+    @Test
+    public void verifyWhileUpdating() throws Exception {
+        CertificatesVerifier verifier = new CertificatesVerifier(
+                Arrays.asList(first.getCertificate(), second.getCertificate()));
+        Map<BigInteger, X509Certificate> certificates = new HashMap<>();
+        certificates.put(first.getCertificate().getSerialNumber(), first.getCertificate());
+        certificates.put(second.getCertificate().getSerialNumber(), second.getCertificate());
+        String signature = first.sign(message);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread updater = new Thread(() -> {
+            while (running.get()) {
+                verifier.updateCertificates(certificates);
+            }
+        });
+        updater.start();
+        try {
+            for (int i = 0; i < 2000; i++) {
+                assertTrue(verifier.verify(first.getSerialNumber(), message, signature));
+            }
+        } finally {
+            running.set(false);
+            updater.join();
+        }
+    }
+
+    @Test
+    public void indexReusesEngines() {
+        CertificateIndex index = CertificateIndex.of(Collections.singletonList(first.getCertificate()));
+        CertificateIndex updated = index.update(Arrays.asList(first.getCertificate(), second.getCertificate()));
+
+        assertEquals(2, updated.size());
+        assertSame(index.getEngine(first.getSerialNumber()), updated.getEngine(first.getSerialNumber()));
+        assertNull(index.getCertificate(second.getSerialNumber()));
+        X509Certificate certificate = updated.getCertificate(second.getSerialNumber());
+        assertEquals(second.getCertificate(), certificate);
+    }
+}
@@ -0,0 +1,102 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.wechat.pay.contrib.apache.httpclient.cert.FileCertificateCache;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileCertificateCacheTest {
+
+    private static final String merchantId = "1900000001";
+    private static final byte[] apiV3Key = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+    private static SelfSignedCertificate certificate;
+    private static SelfSignedCertificate expiredCertificate;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setupClass() throws Exception {
+        certificate = SelfSignedCertificate.generate(BigInteger.valueOf(0x1111));
+        long now = System.currentTimeMillis();
+        expiredCertificate = SelfSignedCertificate.generate(BigInteger.valueOf(0x2222),
+                new Date(now - TimeUnit.DAYS.toMillis(30)), new Date(now - TimeUnit.DAYS.toMillis(1)));
+    }
+
+    @Test
+    public void storeAndLoad() throws Exception {
+        FileCertificateCache cache = new FileCertificateCache(folder.getRoot().toPath().resolve("certs"));
+        assertTrue(cache.load(merchantId, apiV3Key).isEmpty());
+
+        cache.store(merchantId, apiV3Key, Arrays.asList(certificate.getCertificate(),
+                expiredCertificate.getCertificate()));
+        Collection<X509Certificate> loaded = cache.load(merchantId, apiV3Key);
+        // 过期证书不会被加载
+        assertEquals(1, loaded.size());
+        assertEquals(certificate.getCertificate(), loaded.iterator().next());
+    }
+
+    @Test
+    public void rejectTamperedCache() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        FileCertificateCache cache = new FileCertificateCache(directory);
+        cache.store(merchantId, apiV3Key, Arrays.asList(certificate.getCertificate()));
+
+        byte[] otherKey = "fedcba9876543210fedcba9876543210".getBytes(StandardCharsets.UTF_8);
+        assertTrue(cache.load(merchantId, otherKey).isEmpty());
+
+        Path file = directory.resolve(merchantId + ".pem");
+        String content = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII);
+        // 证书内容不变，但文件被改动
+        String tampered = content + "\n";
+        Files.write(file, tampered.getBytes(StandardCharsets.US_ASCII));
+        assertTrue(cache.load(merchantId, apiV3Key).isEmpty());
+    }
+
+    @Test
+    public void macKeyIsDerivedFromApiV3Key() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        FileCertificateCache cache = new FileCertificateCache(directory);
+        cache.store(merchantId, apiV3Key, Arrays.asList(certificate.getCertificate()));
+
+        Path file = directory.resolve(merchantId + ".pem");
+        String content = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII);
+        int headerEnd = content.indexOf('\n');
+        String header = content.substring(0, headerEnd);
+        String body = content.substring(headerEnd + 1);
+
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(apiV3Key, "HmacSHA256"));
+        byte[] macKey = mac.doFinal("wechatpay-cert-cache".getBytes(StandardCharsets.US_ASCII));
+        String direct = Base64.getEncoder().encodeToString(mac.doFinal(body.getBytes(StandardCharsets.US_ASCII)));
+        mac.init(new SecretKeySpec(macKey, "HmacSHA256"));
+        String derived = Base64.getEncoder().encodeToString(mac.doFinal(body.getBytes(StandardCharsets.US_ASCII)));
+        assertTrue(header.endsWith("=" + derived));
+
+        // 直接以APIv3密钥计算HMAC的旧缓存视为没有缓存
+        Files.write(file, (header.substring(0, header.length() - derived.length()) + direct + "\n" + body)
+                .getBytes(StandardCharsets.US_ASCII));
+        assertTrue(cache.load(merchantId, apiV3Key).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectIllegalMerchantId() throws Exception {
+        new FileCertificateCache(folder.getRoot().toPath()).load("../1900000001", apiV3Key);
+    }
+}
@@ -0,0 +1,231 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import static com.wechat.pay.contrib.apache.httpclient.constant.WechatPayHttpHeaders.REQUEST_ID;
+import static com.wechat.pay.contrib.apache.httpclient.constant.WechatPayHttpHeaders.WECHAT_PAY_NONCE;
+import static com.wechat.pay.contrib.apache.httpclient.constant.WechatPayHttpHeaders.WECHAT_PAY_SERIAL;
+import static com.wechat.pay.contrib.apache.httpclient.constant.WechatPayHttpHeaders.WECHAT_PAY_SIGNATURE;
+import static com.wechat.pay.contrib.apache.httpclient.constant.WechatPayHttpHeaders.WECHAT_PAY_TIMESTAMP;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.protocol.BasicAsyncRequestProducer;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpAsyncClientBuilderTest {
+
+    private static final String responseBody = "{\"prepay_id\":\"wx201410272009395522657a690389285100\"}";
+
+    private SelfSignedCertificate certificate;
+    private HttpServer server;
+    private volatile boolean tamper;
+    private volatile Runnable requestHook;
+    private final List<String> authorizations = Collections.synchronizedList(new ArrayList<>());
+    private PrivateKey merchantPrivateKey;
+    private CloseableHttpAsyncClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        certificate = SelfSignedCertificate.generate(BigInteger.valueOf(0x2468));
+        // 以代理的方式接收发往api.mch.weixin.qq.com的请求
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+            Runnable hook = requestHook;
+            if (hook != null) {
+                hook.run();
+            }
+            readAll(exchange.getRequestBody());
+            String timestamp = String.valueOf(System.currentTimeMillis() / 1000);
+            String nonce = "c5ac7061fccab6bf3e254dcf98995b8c";
+            String signature;
+            try {
+                signature = certificate.sign((timestamp + "\n" + nonce + "\n" + responseBody + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+            byte[] body = (tamper ? responseBody.replace('w', 'W') : responseBody).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add(REQUEST_ID, "08F78BB5AF0610D302A0E8DA9B3E0A");
+            exchange.getResponseHeaders().add(WECHAT_PAY_SERIAL, certificate.getSerialNumber());
+            exchange.getResponseHeaders().add(WECHAT_PAY_SIGNATURE, signature);
+            exchange.getResponseHeaders().add(WECHAT_PAY_NONCE, nonce);
+            exchange.getResponseHeaders().add(WECHAT_PAY_TIMESTAMP, timestamp);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        merchantPrivateKey = generator.generateKeyPair().getPrivate();
+        client = newBuilder().build();
+        client.start();
+    }
+
+    private WechatPayHttpAsyncClientBuilder newBuilder() {
+        return WechatPayHttpAsyncClientBuilder.create()
+                .withMerchant("1900009191", "MERCHANT_SERIAL", merchantPrivateKey)
+                .withWechatPay(Collections.singletonList(certificate.getCertificate()))
+                .withProxy(new HttpHost("127.0.0.1", server.getAddress().getPort()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void signAndValidate() throws Exception {
+        List<Future<HttpResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(client.execute(newPost(), null));
+        }
+        for (Future<HttpResponse> future : futures) {
+            HttpResponse response = future.get(30, TimeUnit.SECONDS);
+            assertEquals(200, response.getStatusLine().getStatusCode());
+            assertEquals(responseBody, EntityUtils.toString(response.getEntity()));
+        }
+        assertEquals(20, authorizations.size());
+        for (String authorization : authorizations) {
+            assertTrue(authorization, authorization.startsWith("WECHATPAY2-SHA256-RSA2048 mchid=\"1900009191\""));
+        }
+    }
+
+    @Test
+    public void invalidSignatureFailsFuture() throws Exception {
+        tamper = true;
+        HttpPost post = newPost();
+        try {
+            client.execute(post, null).get(30, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof HttpException);
+        }
+        // 签名头加在发送的副本上，不修改调用方的请求
+        assertFalse(post.containsHeader("Authorization"));
+    }
+
+    @Test
+    public void producerAndConsumerAreSupported() throws Exception {
+        HttpPost post = newPost();
+        HttpResponse response = client.execute(HttpAsyncMethods.create(post), HttpAsyncMethods.createConsumer(),
+                null).get(30, TimeUnit.SECONDS);
+        assertEquals(200, response.getStatusLine().getStatusCode());
+        assertEquals(responseBody, EntityUtils.toString(response.getEntity()));
+        assertEquals(1, authorizations.size());
+        assertTrue(authorizations.get(0).startsWith("WECHATPAY2-SHA256-RSA2048 mchid=\"1900009191\""));
+
+        tamper = true;
+        try {
+            client.execute(HttpAsyncMethods.create(newPost()), HttpAsyncMethods.createConsumer(), null)
+                    .get(30, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof HttpException);
+        }
+    }
+
+    @Test
+    public void producerIsClosedAfterRequestCompletes() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean();
+        AtomicBoolean closedWhenReceived = new AtomicBoolean(true);
+        requestHook = () -> closedWhenReceived.set(closed.get());
+        HttpPost post = newPost();
+        BasicAsyncRequestProducer producer = new BasicAsyncRequestProducer(
+                new HttpHost("api.mch.weixin.qq.com", 80, "http"), post) {
+            @Override
+            public void close() throws IOException {
+                closed.set(true);
+                super.close();
+            }
+        };
+        client.execute(producer, HttpAsyncMethods.createConsumer(), null).get(30, TimeUnit.SECONDS);
+        // 发送请求时producer尚未关闭，请求结束后关闭
+        assertFalse(closedWhenReceived.get());
+        assertTrue(closed.get());
+    }
+
+    @Test
+    public void validationRunsOnValidationExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "validation-test"));
+        AtomicReference<String> callbackThread = new AtomicReference<>();
+        try (CloseableHttpAsyncClient validating = newBuilder().withValidationExecutor(executor).build()) {
+            validating.start();
+            HttpResponse response = validating.execute(newPost(), new FutureCallback<HttpResponse>() {
+                @Override
+                public void completed(HttpResponse result) {
+                    callbackThread.set(Thread.currentThread().getName());
+                }
+
+                @Override
+                public void failed(Exception ex) {
+                }
+
+                @Override
+                public void cancelled() {
+                }
+            }).get(30, TimeUnit.SECONDS);
+            assertEquals(responseBody, EntityUtils.toString(response.getEntity()));
+        } finally {
+            executor.shutdown();
+        }
+        // Future完成后才回调，等待回调结束
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        // 验签和回调都不在I/O线程上执行
+        assertEquals("validation-test", callbackThread.get());
+    }
+
+    private static HttpPost newPost() {
+        HttpPost post = new HttpPost("http://api.mch.weixin.qq.com/v3/pay/transactions/jsapi");
+        post.setEntity(new StringEntity("{\"appid\":\"wxd678efh567hg6787\"}", ContentType.APPLICATION_JSON));
+        return post;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,68 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import com.wechat.pay.contrib.apache.httpclient.auth.PrivateKeySigner;
+import com.wechat.pay.contrib.apache.httpclient.auth.Signer;
+import com.wechat.pay.contrib.apache.httpclient.jfr.WechatPayEvents;
+import com.wechat.pay.contrib.apache.httpclient.util.AesUtil;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JfrEventsTest {
+
+    private static final byte[] apiV3Key = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] nonce = "fdasflkja484".getBytes(StandardCharsets.US_ASCII);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void signAndDecryptAreRecorded() throws Exception {
+        assumeTrue(WechatPayEvents.isAvailable());
+        SelfSignedCertificate certificate = SelfSignedCertificate.generate(BigInteger.valueOf(0x1357));
+        Signer signer = new PrivateKeySigner("MERCHANT_SERIAL", certificate.getPrivateKey());
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(apiV3Key, "AES"), new GCMParameterSpec(128, nonce));
+        cipher.updateAAD("transaction".getBytes(StandardCharsets.UTF_8));
+        String ciphertext = Base64.getEncoder().encodeToString(cipher.doFinal("{}".getBytes(StandardCharsets.UTF_8)));
+
+        Path dump = folder.getRoot().toPath().resolve("events.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.wechat.pay.Sign");
+            recording.enable("com.wechat.pay.Decrypt");
+            recording.start();
+            signer.sign(new byte[100]);
+            new AesUtil(apiV3Key).decryptToString("transaction".getBytes(StandardCharsets.UTF_8), nonce, ciphertext);
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump).stream()
+                .filter(e -> e.getEventType().getName().startsWith("com.wechat.pay."))
+                .collect(Collectors.toList());
+        assertEquals(2, events.size());
+        RecordedEvent sign = events.get(0);
+        assertEquals("com.wechat.pay.Sign", sign.getEventType().getName());
+        assertEquals("MERCHANT_SERIAL", sign.getString("serialNumber"));
+        assertEquals(100, sign.getLong("messageSize"));
+        RecordedEvent decrypt = events.get(1);
+        assertEquals("com.wechat.pay.Decrypt", decrypt.getEventType().getName());
+        assertEquals("transaction", decrypt.getString("associatedData"));
+        assertEquals(ciphertext.length(), decrypt.getLong("ciphertextSize"));
+    }
+}
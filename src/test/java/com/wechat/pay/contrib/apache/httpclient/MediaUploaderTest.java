@@ -0,0 +1,124 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import com.wechat.pay.contrib.apache.httpclient.exception.HttpCodeException;
+import com.wechat.pay.contrib.apache.httpclient.upload.MediaUploader;
+import com.wechat.pay.contrib.apache.httpclient.upload.UploadResult;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MediaUploaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final ExecutorService serverExecutor = Executors.newCachedThreadPool();
+    private HttpServer server;
+    private CloseableHttpClient httpClient;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v3/merchant/media/upload", exchange -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                String body = new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8);
+                Thread.sleep(50);
+                boolean bad = body.contains("\"filename\":\"bad.png\"");
+                String filename = body.replaceAll("(?s).*\"filename\":\"([^\"]+)\".*", "$1");
+                byte[] response = (bad ? "{\"code\":\"PARAM_ERROR\"}" : "{\"media_id\":\"id-" + filename + "\"}")
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(bad ? 400 : 200, response.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+        });
+        server.setExecutor(serverExecutor);
+        server.start();
+        httpClient = HttpClients.custom().setMaxConnPerRoute(16).setMaxConnTotal(16).build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        httpClient.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void uploadWithConcurrencyLimit() throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Path file = folder.getRoot().toPath().resolve("image" + i + ".png");
+            Files.write(file, new byte[]{(byte) i, 1, 2, 3});
+            files.add(file);
+        }
+        Path bad = folder.getRoot().toPath().resolve("bad.png");
+        Files.write(bad, new byte[]{0});
+        files.add(bad);
+
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/v3/merchant/media/upload");
+        List<UploadResult> results;
+        try (MediaUploader uploader = new MediaUploader.Builder()
+                .withHttpClient(httpClient)
+                .withUri(uri)
+                .withConcurrency(3)
+                .build()) {
+            results = uploader.uploadAll(files);
+        }
+
+        assertEquals(files.size(), results.size());
+        assertTrue(maxRunning.get() <= 3);
+        for (UploadResult result : results) {
+            if (result.getFile().equals(bad)) {
+                assertFalse(result.isSuccess());
+                assertNull(result.getMediaId());
+                assertTrue(result.getError() instanceof HttpCodeException);
+            } else {
+                assertTrue(String.valueOf(result.getError()), result.isSuccess());
+                assertEquals("id-" + result.getFile().getFileName(), result.getMediaId());
+            }
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
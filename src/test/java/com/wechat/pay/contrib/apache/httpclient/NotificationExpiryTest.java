@@ -0,0 +1,77 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.wechat.pay.contrib.apache.httpclient.auth.CertificatesVerifier;
+import com.wechat.pay.contrib.apache.httpclient.exception.ValidationException;
+import com.wechat.pay.contrib.apache.httpclient.notification.NotificationHandler;
+import com.wechat.pay.contrib.apache.httpclient.notification.NotificationRequest;
+import com.wechat.pay.contrib.apache.httpclient.util.ManualEpochClock;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.Test;
+
+public class NotificationExpiryTest {
+
+    private static final byte[] apiV3Key = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+    private static final long timestamp = 1650000000L;
+
+    @Test
+    public void expiredNotificationIsRejected() throws Exception {
+        SelfSignedCertificate certificate = SelfSignedCertificate.generate(BigInteger.valueOf(0x5678));
+        NotificationRequest request = signedRequest(certificate);
+        ManualEpochClock clock = new ManualEpochClock(timestamp + 299);
+        NotificationHandler handler = new NotificationHandler(
+                new CertificatesVerifier(Collections.singletonList(certificate.getCertificate())), apiV3Key, clock);
+
+        assertEquals("{\"id\":1}", handler.parse(request).getDecryptData());
+
+        clock.advance(1);
+        try {
+            handler.parse(request);
+            fail();
+        } catch (ValidationException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("过期"));
+        }
+    }
+
+    @Test
+    public void expiryIsNotCheckedByDefault() throws Exception {
+        SelfSignedCertificate certificate = SelfSignedCertificate.generate(BigInteger.valueOf(0x5679));
+        NotificationHandler handler = new NotificationHandler(
+                new CertificatesVerifier(Collections.singletonList(certificate.getCertificate())), apiV3Key);
+
+        // 未指定时钟时，即使时间戳早已过期也不拒绝
+        assertEquals("{\"id\":1}", handler.parse(signedRequest(certificate)).getDecryptData());
+    }
+
+    private static NotificationRequest signedRequest(SelfSignedCertificate certificate) throws Exception {
+        String nonce = "fdasflkja484";
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(apiV3Key, "AES"),
+                new GCMParameterSpec(128, nonce.getBytes(StandardCharsets.UTF_8)));
+        cipher.updateAAD("transaction".getBytes(StandardCharsets.UTF_8));
+        String ciphertext = Base64.getEncoder().encodeToString(
+                cipher.doFinal("{\"id\":1}".getBytes(StandardCharsets.UTF_8)));
+        String body = "{\"id\":\"EV-2018022511223320873\",\"create_time\":\"2022-04-15T13:29:35+08:00\","
+                + "\"resource_type\":\"encrypt-resource\",\"event_type\":\"TRANSACTION.SUCCESS\","
+                + "\"summary\":\"支付成功\",\"resource\":{\"algorithm\":\"AEAD_AES_256_GCM\","
+                + "\"ciphertext\":\"" + ciphertext + "\",\"associated_data\":\"transaction\","
+                + "\"original_type\":\"transaction\",\"nonce\":\"" + nonce + "\"}}";
+        String message = timestamp + "\n" + "nonce" + "\n" + body + "\n";
+        return new NotificationRequest.Builder()
+                .withSerialNumber(certificate.getSerialNumber())
+                .withNonce("nonce")
+                .withTimestamp(String.valueOf(timestamp))
+                .withSignature(certificate.sign(message.getBytes(StandardCharsets.UTF_8)))
+                .withBody(body)
+                .build();
+    }
+}
@@ -0,0 +1,123 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.wechat.pay.contrib.apache.httpclient.auth.PooledPrivateKeySigner;
+import com.wechat.pay.contrib.apache.httpclient.auth.PrivateKeySigner;
+import com.wechat.pay.contrib.apache.httpclient.auth.Signer;
+import com.wechat.pay.contrib.apache.httpclient.auth.WechatPay2Credentials;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class PooledPrivateKeySignerTest {
+
+    private static final String serialNumber = "1DDE55AD98ED71D6EDD4A4A16996DE7B47773A8C";
+    private static KeyPair keyPair;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+    }
+
+    @Test
+    public void sameSignatureAsPrivateKeySigner() {
+        byte[] message = "GET\n/v3/certificates\n1554208460\nnonce\n\n".getBytes(StandardCharsets.UTF_8);
+        Signer.SignatureResult expected = new PrivateKeySigner(serialNumber, keyPair.getPrivate()).sign(message);
+        Signer signer = new PooledPrivateKeySigner(serialNumber, keyPair.getPrivate(), 2);
+        for (int i = 0; i < 3; i++) {
+            Signer.SignatureResult result = signer.sign(message);
+            assertEquals(expected.getSign(), result.getSign());
+            assertEquals(serialNumber, result.getCertificateSerialNumber());
+        }
+    }
+
+    @Test
+    public void streamingSign() throws Exception {
+        byte[] message = "POST\n/v3/pay/transactions/jsapi\n1554208460\nnonce\n{}\n".getBytes(StandardCharsets.UTF_8);
+        Signer.SignatureResult expected = new PrivateKeySigner(serialNumber, keyPair.getPrivate()).sign(message);
+        Signer[] signers = {new PrivateKeySigner(serialNumber, keyPair.getPrivate()),
+                new PooledPrivateKeySigner(serialNumber, keyPair.getPrivate(), 2)};
+        for (Signer signer : signers) {
+            Signer.SignatureResult result = signer.sign(out -> {
+                out.write(message, 0, 10);
+                out.write(message[10]);
+                out.write(message, 11, message.length - 11);
+            });
+            assertEquals(expected.getSign(), result.getSign());
+        }
+    }
+
+    @Test
+    public void overriddenSignIsUsed() throws Exception {
+        byte[] message = "GET\n/v3/certificates\n1554208460\nnonce\n\n".getBytes(StandardCharsets.UTF_8);
+        Signer.SignatureResult expected = new PrivateKeySigner(serialNumber, keyPair.getPrivate()).sign(message);
+        AtomicInteger calls = new AtomicInteger();
+        Signer[] signers = {
+                new PrivateKeySigner(serialNumber, keyPair.getPrivate()) {
+                    @Override
+                    public SignatureResult sign(byte[] message) {
+                        calls.incrementAndGet();
+                        return super.sign(message);
+                    }
+                },
+                new PooledPrivateKeySigner(serialNumber, keyPair.getPrivate(), 2) {
+                    @Override
+                    public SignatureResult sign(byte[] message) {
+                        calls.incrementAndGet();
+                        return super.sign(message);
+                    }
+                }};
+        for (Signer signer : signers) {
+            calls.set(0);
+            byte[] padded = new byte[message.length + 2];
+            System.arraycopy(message, 0, padded, 1, message.length);
+            assertEquals(expected.getSign(), signer.sign(padded, 1, message.length).getSign());
+            assertEquals(expected.getSign(), signer.sign(out -> out.write(message)).getSign());
+            assertEquals(2, calls.get());
+
+            // WechatPay2Credentials生成Authorization时同样经由重写的方法
+            new WechatPay2Credentials("1900009191", signer)
+                    .getToken(HttpRequestWrapper.wrap(new HttpGet("https://api.mch.weixin.qq.com/v3/certificates")));
+            assertEquals(3, calls.get());
+        }
+    }
+
+    @Test
+    public void concurrentSign() throws Exception {
+        Signer signer = new PooledPrivateKeySigner(serialNumber, keyPair.getPrivate(), 2);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                byte[] message = ("message-" + i).getBytes(StandardCharsets.UTF_8);
+                futures.add(executor.submit(() -> {
+                    Signature verifier = Signature.getInstance("SHA256withRSA");
+                    verifier.initVerify(keyPair.getPublic());
+                    verifier.update(message);
+                    return verifier.verify(Base64.getDecoder().decode(signer.sign(message).getSign()));
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
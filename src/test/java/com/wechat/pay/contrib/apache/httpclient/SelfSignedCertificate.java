@@ -0,0 +1,137 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.text.SimpleDateFormat;
+import java.util.Base64;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测试用的自签名平台证书，不依赖网络和第三方库
+ */
+public final class SelfSignedCertificate {
+
+    private static final byte[] SHA256_WITH_RSA = {0x06, 0x09, 0x2A, (byte) 0x86, 0x48, (byte) 0x86, (byte) 0xF7,
+            0x0D, 0x01, 0x01, 0x0B};
+    private static final byte[] COMMON_NAME = {0x06, 0x03, 0x55, 0x04, 0x03};
+
+    private final KeyPair keyPair;
+    private final X509Certificate certificate;
+
+    private SelfSignedCertificate(KeyPair keyPair, X509Certificate certificate) {
+        this.keyPair = keyPair;
+        this.certificate = certificate;
+    }
+
+    public static SelfSignedCertificate generate(BigInteger serialNumber) throws GeneralSecurityException {
+        long now = System.currentTimeMillis();
+        return generate(serialNumber, new Date(now - TimeUnit.DAYS.toMillis(1)),
+                new Date(now + TimeUnit.DAYS.toMillis(365)));
+    }
+
+    public static SelfSignedCertificate generate(BigInteger serialNumber, Date notBefore, Date notAfter)
+            throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+
+        byte[] algorithm = sequence(SHA256_WITH_RSA, new byte[]{0x05, 0x00});
+        byte[] name = sequence(tlv(0x31, sequence(COMMON_NAME,
+                tlv(0x0C, "Wechatpay Test".getBytes(StandardCharsets.UTF_8)))));
+        byte[] tbs = sequence(
+                tlv(0x02, serialNumber.toByteArray()),
+                algorithm,
+                name,
+                sequence(utcTime(notBefore), utcTime(notAfter)),
+                name,
+                keyPair.getPublic().getEncoded());
+
+        Signature signer = Signature.getInstance("SHA256withRSA");
+        signer.initSign(keyPair.getPrivate());
+        signer.update(tbs);
+        byte[] signature = signer.sign();
+        byte[] bitString = new byte[signature.length + 1];
+        System.arraycopy(signature, 0, bitString, 1, signature.length);
+
+        byte[] der = sequence(tbs, algorithm, tlv(0x03, bitString));
+        X509Certificate certificate = (X509Certificate) CertificateFactory.getInstance("X509")
+                .generateCertificate(new ByteArrayInputStream(der));
+        return new SelfSignedCertificate(keyPair, certificate);
+    }
+
+    public X509Certificate getCertificate() {
+        return certificate;
+    }
+
+    public PrivateKey getPrivateKey() {
+        return keyPair.getPrivate();
+    }
+
+    public String getSerialNumber() {
+        return certificate.getSerialNumber().toString(16).toUpperCase();
+    }
+
+    public String toPem() throws GeneralSecurityException {
+        return "-----BEGIN CERTIFICATE-----\n"
+                + Base64.getMimeEncoder().encodeToString(certificate.getEncoded())
+                + "\n-----END CERTIFICATE-----\n";
+    }
+
+    /**
+     * 使用证书对应的私钥计算Base64编码的SHA256withRSA签名
+     */
+    public String sign(byte[] message) throws GeneralSecurityException {
+        Signature signer = Signature.getInstance("SHA256withRSA");
+        signer.initSign(keyPair.getPrivate());
+        signer.update(message);
+        return Base64.getEncoder().encodeToString(signer.sign());
+    }
+
+    private static byte[] utcTime(Date date) {
+        SimpleDateFormat format = new SimpleDateFormat("yyMMddHHmmss'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return tlv(0x17, format.format(date).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] sequence(byte[]... elements) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] element : elements) {
+            out.write(element, 0, element.length);
+        }
+        return tlv(0x30, out.toByteArray());
+    }
+
+    private static byte[] tlv(int tag, byte[] value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(value.length + 6);
+        out.write(tag);
+        int length = value.length;
+        if (length < 0x80) {
+            out.write(length);
+        } else if (length < 0x100) {
+            out.write(0x81);
+            out.write(length);
+        } else if (length < 0x10000) {
+            out.write(0x82);
+            out.write(length >> 8);
+            out.write(length);
+        } else {
+            out.write(0x83);
+            out.write(length >> 16);
+            out.write(length >> 8);
+            out.write(length);
+        }
+        out.write(value, 0, value.length);
+        return out.toByteArray();
+    }
+}
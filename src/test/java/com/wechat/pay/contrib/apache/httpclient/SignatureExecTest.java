@@ -0,0 +1,188 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.wechat.pay.contrib.apache.httpclient.auth.MessageWriter;
+import com.wechat.pay.contrib.apache.httpclient.auth.Signer;
+import com.wechat.pay.contrib.apache.httpclient.auth.WechatPay2Credentials;
+import com.wechat.pay.contrib.apache.httpclient.metrics.MetricsListener;
+import com.wechat.pay.contrib.apache.httpclient.metrics.ValidationFailure;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+public class SignatureExecTest {
+
+    private static final HttpHost target = new HttpHost("api.mch.weixin.qq.com", 443, "https");
+    private static final Validator validator = new Validator() {
+        @Override
+        public boolean validate(CloseableHttpResponse response) {
+            return true;
+        }
+
+        @Override
+        public String getSerialNumber() {
+            return "serial";
+        }
+    };
+
+    @Test
+    public void nonRepeatableBodyIsReadOnce() throws Exception {
+        byte[] body = new byte[256 * 1024];
+        new Random(1).nextBytes(body);
+        CapturingSigner signer = new CapturingSigner();
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        SignatureExec exec = new SignatureExec(new WechatPay2Credentials("1900009191", signer), validator,
+                (route, request, context, execAware) -> {
+                    ((HttpEntityEnclosingRequest) request).getEntity().writeTo(wire);
+                    return new StubResponse();
+                });
+
+        HttpPost post = new HttpPost("https://api.mch.weixin.qq.com/v3/transfer/batches");
+        post.setEntity(new InputStreamEntity(new ByteArrayInputStream(body), body.length,
+                ContentType.APPLICATION_JSON));
+        HttpRequestWrapper request = HttpRequestWrapper.wrap(post, target);
+        exec.execute(new HttpRoute(target), request, HttpClientContext.create(), null);
+
+        assertArrayEquals(body, wire.toByteArray());
+        byte[] message = signer.message;
+        assertArrayEquals(body, Arrays.copyOfRange(message, message.length - body.length - 1, message.length - 1));
+        assertEquals('\n', message[message.length - 1]);
+        assertEquals(ContentType.APPLICATION_JSON.toString(),
+                ((HttpEntityEnclosingRequest) request).getEntity().getContentType().getValue());
+    }
+
+    @Test
+    public void repeatableBodyIsNotCopied() throws Exception {
+        SignatureExec exec = new SignatureExec(new WechatPay2Credentials("1900009191", new CapturingSigner()),
+                validator, (route, request, context, execAware) -> new StubResponse());
+        HttpPost post = new HttpPost("https://api.mch.weixin.qq.com/v3/pay/transactions/jsapi");
+        HttpEntity entity = new StringEntity("{}", ContentType.APPLICATION_JSON);
+        post.setEntity(entity);
+        HttpRequestWrapper request = HttpRequestWrapper.wrap(post, target);
+        exec.execute(new HttpRoute(target), request, HttpClientContext.create(), null);
+        assertSame(entity, ((HttpEntityEnclosingRequest) request).getEntity());
+        assertTrue(request.containsHeader("Authorization"));
+    }
+
+    @Test
+    public void downloadResponseIsStreamed() throws Exception {
+        HttpEntity body = new InputStreamEntity(new ByteArrayInputStream(new byte[]{1, 2, 3}), 3);
+        SignatureExec exec = new SignatureExec(new WechatPay2Credentials("1900009191", new CapturingSigner()),
+                new Validator() {
+                    @Override
+                    public boolean validate(CloseableHttpResponse response) {
+                        throw new AssertionError("账单文件应答不应验签");
+                    }
+
+                    @Override
+                    public String getSerialNumber() {
+                        return "serial";
+                    }
+                }, (route, request, context, execAware) -> {
+                    StubResponse response = new StubResponse();
+                    response.setEntity(body);
+                    return response;
+                });
+        WechatPayDownloadHttpGet get = new WechatPayDownloadHttpGet.Builder(
+                URI.create("https://api.mch.weixin.qq.com/v3/billdownload/file?token=abc"))
+                .withHash("SHA1", "7037807198c22a7d2b0807371d763779a84fdfcf")
+                .build();
+        HttpRequestWrapper request = HttpRequestWrapper.wrap(get, target);
+        CloseableHttpResponse response = exec.execute(new HttpRoute(target), request, HttpClientContext.create(),
+                null);
+        assertSame(body, response.getEntity());
+        assertTrue(request.containsHeader("Authorization"));
+    }
+
+    @Test
+    public void metricsAreReported() throws Exception {
+        List<String> events = new ArrayList<>();
+        MetricsListener metrics = new MetricsListener() {
+            @Override
+            public void onSign(String method, String uriTemplate, long nanos) {
+                events.add("sign " + method + " " + uriTemplate);
+            }
+
+            @Override
+            public void onExecute(String method, String uriTemplate, int statusCode, long nanos) {
+                events.add("execute " + statusCode);
+            }
+
+            @Override
+            public void onValidate(String method, String uriTemplate, ValidationFailure failure, long nanos) {
+                events.add("validate " + failure);
+            }
+
+            @Override
+            public void onBodyBuffered(String method, String uriTemplate, BodyType type, long bytes) {
+                events.add(type + " " + bytes);
+            }
+        };
+        SignatureExec exec = new SignatureExec(new WechatPay2Credentials("1900009191", new CapturingSigner()),
+                validator, (route, request, context, execAware) -> {
+                    StubResponse response = new StubResponse();
+                    response.setEntity(new InputStreamEntity(new ByteArrayInputStream(new byte[]{'{', '}'}), 2));
+                    return response;
+                }, metrics);
+        HttpPost post = new HttpPost(
+                "https://api.mch.weixin.qq.com/v3/pay/transactions/out-trade-no/1217752501201407033233368018/close");
+        post.setEntity(new InputStreamEntity(new ByteArrayInputStream(new byte[16]), 16));
+        exec.execute(new HttpRoute(target), HttpRequestWrapper.wrap(post, target), HttpClientContext.create(), null);
+
+        assertEquals(Arrays.asList("REQUEST 16", "sign POST /v3/pay/transactions/out-trade-no/{id}/close",
+                "execute 200", "RESPONSE 2", "validate null"), events);
+    }
+
+    private static class CapturingSigner implements Signer {
+
+        private byte[] message;
+
+        @Override
+        public SignatureResult sign(byte[] message) {
+            this.message = message.clone();
+            return new SignatureResult("signature", "serial");
+        }
+
+        @Override
+        public SignatureResult sign(MessageWriter message) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            message.writeTo(out);
+            this.message = out.toByteArray();
+            return new SignatureResult("signature", "serial");
+        }
+    }
+
+    private static class StubResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+        StubResponse() {
+            super(HttpVersion.HTTP_1_1, 200, "OK");
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
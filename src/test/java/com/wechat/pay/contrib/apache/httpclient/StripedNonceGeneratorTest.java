@@ -0,0 +1,55 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.wechat.pay.contrib.apache.httpclient.auth.StripedNonceGenerator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class StripedNonceGeneratorTest {
+
+    private static final String SYMBOLS = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    @Test
+    public void generateNonce() {
+        StripedNonceGenerator generator = new StripedNonceGenerator(4);
+        int[] counts = new int[128];
+        Set<String> nonces = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            String nonce = generator.generateNonce();
+            assertEquals(32, nonce.length());
+            for (char c : nonce.toCharArray()) {
+                assertTrue(nonce, SYMBOLS.indexOf(c) >= 0);
+                counts[c]++;
+            }
+            nonces.add(nonce);
+        }
+        assertEquals(10000, nonces.size());
+        // 320000个字符，每个字符期望约5161次
+        for (char c : SYMBOLS.toCharArray()) {
+            assertTrue(String.valueOf(c), counts[c] > 4500 && counts[c] < 5800);
+        }
+    }
+
+    @Test
+    public void concurrentNoncesAreUnique() throws Exception {
+        Set<String> nonces = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    nonces.add(StripedNonceGenerator.getDefault().generateNonce());
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(16000, nonces.size());
+    }
+}
@@ -0,0 +1,104 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.wechat.pay.contrib.apache.httpclient.cert.CertificateDownloader;
+import com.wechat.pay.contrib.apache.httpclient.exception.HttpCodeException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import org.apache.http.HttpHost;
+
+/**
+ * 测试用的证书下载器，按认证器返回预先登记的加密证书，不访问网络
+ */
+public class StubCertificateDownloader extends CertificateDownloader {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final SecureRandom random = new SecureRandom();
+
+    private final Map<Credentials, String> bodies = new ConcurrentHashMap<>();
+    private final Map<Credentials, Boolean> failures = new ConcurrentHashMap<>();
+    private final AtomicInteger downloads = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final long delayMillis;
+
+    public StubCertificateDownloader(long delayMillis) {
+        super(new CertificateDownloader.Builder());
+        this.delayMillis = delayMillis;
+    }
+
+    public void register(Credentials credentials, byte[] apiV3Key, SelfSignedCertificate... certificates)
+            throws GeneralSecurityException {
+        ArrayNode data = mapper.createArrayNode();
+        for (SelfSignedCertificate certificate : certificates) {
+            byte[] nonce = new byte[12];
+            for (int i = 0; i < nonce.length; i++) {
+                nonce[i] = (byte) ('a' + random.nextInt(26));
+            }
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(apiV3Key, "AES"), new GCMParameterSpec(128, nonce));
+            cipher.updateAAD("certificate".getBytes(StandardCharsets.UTF_8));
+            byte[] ciphertext = cipher.doFinal(certificate.toPem().getBytes(StandardCharsets.UTF_8));
+
+            ObjectNode encrypted = mapper.createObjectNode();
+            encrypted.put("algorithm", "AEAD_AES_256_GCM");
+            encrypted.put("associated_data", "certificate");
+            encrypted.put("nonce", new String(nonce, StandardCharsets.UTF_8));
+            encrypted.put("ciphertext", Base64.getEncoder().encodeToString(ciphertext));
+            ObjectNode node = data.addObject();
+            node.put("serial_no", certificate.getSerialNumber());
+            node.set("encrypt_certificate", encrypted);
+        }
+        ObjectNode body = mapper.createObjectNode();
+        body.set("data", data);
+        bodies.put(credentials, body.toString());
+    }
+
+    public void setFailing(Credentials credentials, boolean failing) {
+        failures.put(credentials, failing);
+    }
+
+    public int getDownloads() {
+        return downloads.get();
+    }
+
+    public int getMaxRunning() {
+        return maxRunning.get();
+    }
+
+    public void resetMaxRunning() {
+        maxRunning.set(0);
+    }
+
+    @Override
+    public String download(Credentials credentials, Validator validator, HttpHost proxy)
+            throws HttpCodeException, IOException {
+        downloads.incrementAndGet();
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
+            if (failures.getOrDefault(credentials, false) || !bodies.containsKey(credentials)) {
+                throw new HttpCodeException("下载平台证书返回状态码异常，状态码为:500");
+            }
+            return bodies.get(credentials);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            running.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import static com.wechat.pay.contrib.apache.httpclient.metrics.UriTemplates.normalize;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class UriTemplatesTest {
+
+    @Test
+    public void identifiersAreReplaced() {
+        assertEquals("/v3/pay/transactions/jsapi", normalize("/v3/pay/transactions/jsapi"));
+        assertEquals("/v3/pay/transactions/id/{id}",
+                normalize("/v3/pay/transactions/id/4200000985202103031441826014?mchid=1230000109"));
+        assertEquals("/v3/pay/transactions/out-trade-no/{id}/close",
+                normalize("/v3/pay/transactions/out-trade-no/order_abc/close"));
+        assertEquals("/v3/refund/domestic/refunds/{id}", normalize("/v3/refund/domestic/refunds/1217752501201407"));
+        assertEquals("/v3/transfer/batches/batch-id/{id}/details/detail-id/{id}",
+                normalize("/v3/transfer/batches/batch-id/1030000071100999991182020050700019480001"
+                        + "/details/detail-id/1040000071100999991182020050700019500100"));
+        assertEquals("/v3/merchant-service/complaints-v2/{id}",
+                normalize("/v3/merchant-service/complaints-v2/200201820200101080076610000"));
+        assertEquals("/v3/applyment4sub/applyment/business_code/{id}",
+                normalize("/v3/applyment4sub/applyment/business_code/APPLYMENT_00000000001"));
+    }
+
+    @Test
+    public void emptyPath() {
+        assertEquals("/", normalize(null));
+        assertEquals("/", normalize(""));
+        assertEquals("/", normalize("/"));
+        assertEquals("/v3/certificates/", normalize("/v3/certificates/"));
+    }
+}
@@ -0,0 +1,129 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.wechat.pay.contrib.apache.httpclient.auth.Signer;
+import com.wechat.pay.contrib.apache.httpclient.auth.WechatPay2Credentials;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.junit.Test;
+
+public class WechatPay2CredentialsTest {
+
+    private static final String nonce = "593BEC0C930BF1AFEB40B4A08C8FB242";
+    private static final long timestamp = 1554208460L;
+
+    @Test
+    public void sameMessageAsBuildMessage() throws Exception {
+        HttpPost post = new HttpPost("https://api.mch.weixin.qq.com/v3/pay/transactions/jsapi");
+        post.setEntity(new BufferedHttpEntity(new StringEntity(
+                "{\"description\":\"Image形象店-深圳腾大-QQ公仔\",\"amount\":{\"total\":1}}",
+                ContentType.APPLICATION_JSON)));
+        assertSameMessage(post);
+
+        char[] large = new char[100 * 1024];
+        Arrays.fill(large, 'a');
+        HttpPost largePost = new HttpPost("https://api.mch.weixin.qq.com/v3/transfer/batches");
+        largePost.setEntity(new BufferedHttpEntity(new StringEntity(new String(large),
+                ContentType.APPLICATION_JSON)));
+        assertSameMessage(largePost);
+
+        assertSameMessage(new HttpGet("https://api.mch.weixin.qq.com/v3/certificates?a=%E4%B8%AD&b=1"));
+
+        assertSameMessage(new WechatPayUploadHttpPost.Builder(
+                URI.create("https://api.mch.weixin.qq.com/v3/merchant/media/upload"))
+                .withImage("测试.png", "sha256", new ByteArrayInputStream(new byte[]{1, 2, 3}))
+                .build());
+    }
+
+    @Test
+    public void overriddenBuildMessageIsUsed() throws Exception {
+        CapturingSigner signer = new CapturingSigner();
+        new FixedCredentials(signer) {
+            @Override
+            protected String buildMessage(String nonce, long timestamp, HttpRequestWrapper request) {
+                return "custom\n";
+            }
+        }.getToken(HttpRequestWrapper.wrap(new HttpGet("https://api.mch.weixin.qq.com/v3/certificates")));
+        assertEquals("custom\n", new String(signer.message, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void nonceGeneratorIsUsed() throws Exception {
+        String token = new WechatPay2Credentials("1900009191", new CapturingSigner(), () -> "fixednonce")
+                .getToken(HttpRequestWrapper.wrap(new HttpGet("https://api.mch.weixin.qq.com/v3/certificates")));
+        assertTrue(token, token.contains("nonce_str=\"fixednonce\""));
+    }
+
+    private static void assertSameMessage(HttpUriRequest request) throws IOException {
+        CapturingSigner signer = new CapturingSigner();
+        String token = new FixedCredentials(signer).getToken(HttpRequestWrapper.wrap(request));
+
+        CapturingSigner legacySigner = new CapturingSigner();
+        String legacyToken = new LegacyCredentials(legacySigner).getToken(HttpRequestWrapper.wrap(request));
+
+        assertArrayEquals(legacySigner.message, signer.message);
+        assertEquals(legacyToken, token);
+    }
+
+    private static class FixedCredentials extends WechatPay2Credentials {
+
+        FixedCredentials(Signer signer) {
+            super("1900009191", signer);
+        }
+
+        @Override
+        protected long generateTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        protected String generateNonceStr() {
+            return nonce;
+        }
+    }
+
+    /**
+     * 重写buildMessage，走拼接字符串的原有路径
+     */
+    private static class LegacyCredentials extends FixedCredentials {
+
+        LegacyCredentials(Signer signer) {
+            super(signer);
+        }
+
+        @Override
+        protected String buildMessage(String nonce, long timestamp, HttpRequestWrapper request) throws IOException {
+            return super.buildMessage(nonce, timestamp, request);
+        }
+    }
+
+    private static class CapturingSigner implements Signer {
+
+        private byte[] message;
+
+        @Override
+        public SignatureResult sign(byte[] message) {
+            this.message = message.clone();
+            return new SignatureResult("signature", "serial");
+        }
+
+        @Override
+        public SignatureResult sign(byte[] message, int offset, int length) {
+            this.message = Arrays.copyOfRange(message, offset, offset + length);
+            return new SignatureResult("signature", "serial");
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import static com.wechat.pay.contrib.apache.httpclient.constant.WechatPayHttpHeaders.REQUEST_ID;
+import static com.wechat.pay.contrib.apache.httpclient.constant.WechatPayHttpHeaders.WECHAT_PAY_NONCE;
+import static com.wechat.pay.contrib.apache.httpclient.constant.WechatPayHttpHeaders.WECHAT_PAY_SERIAL;
+import static com.wechat.pay.contrib.apache.httpclient.constant.WechatPayHttpHeaders.WECHAT_PAY_SIGNATURE;
+import static com.wechat.pay.contrib.apache.httpclient.constant.WechatPayHttpHeaders.WECHAT_PAY_TIMESTAMP;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.wechat.pay.contrib.apache.httpclient.auth.CertificatesVerifier;
+import com.wechat.pay.contrib.apache.httpclient.auth.PublicKeyVerifier;
+import com.wechat.pay.contrib.apache.httpclient.auth.Verifier;
+import com.wechat.pay.contrib.apache.httpclient.auth.WechatPay2Validator;
+import com.wechat.pay.contrib.apache.httpclient.metrics.ValidationFailure;
+import com.wechat.pay.contrib.apache.httpclient.util.ManualEpochClock;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class WechatPay2ValidatorTest {
+
+    private static final String nonce = "c5ac7061fccab6bf3e254dcf98995b8c";
+    private static SelfSignedCertificate certificate;
+
+    @BeforeClass
+    public static void setupClass() throws Exception {
+        certificate = SelfSignedCertificate.generate(BigInteger.valueOf(0x4321));
+    }
+
+    @Test
+    public void validateRawBodyBytes() throws Exception {
+        // 未声明charset的非ASCII应答体，按原始字节验签
+        byte[] body = "{\"description\":\"Image形象店-深圳腾大-QQ公仔\"}".getBytes(StandardCharsets.UTF_8);
+        Verifier[] verifiers = {
+                new CertificatesVerifier(Collections.singletonList(certificate.getCertificate())),
+                new PublicKeyVerifier(certificate.getSerialNumber(), certificate.getCertificate().getPublicKey())};
+        for (Verifier verifier : verifiers) {
+            WechatPay2Validator validator = new WechatPay2Validator(verifier);
+            assertTrue(validator.validate(signedResponse(body, body)));
+
+            byte[] tampered = body.clone();
+            tampered[tampered.length - 2] = 'x';
+            assertFalse(validator.validate(signedResponse(body, tampered)));
+        }
+    }
+
+    @Test
+    public void validateLargeBody() throws Exception {
+        byte[] body = new byte[1024 * 1024];
+        Arrays.fill(body, (byte) 'a');
+        WechatPay2Validator validator = new WechatPay2Validator(
+                new CertificatesVerifier(Collections.singletonList(certificate.getCertificate())));
+        assertTrue(validator.validate(signedResponse(body, body)));
+    }
+
+    @Test
+    public void expiredResponseIsRejected() throws Exception {
+        byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+        long now = 1650000000L;
+        ManualEpochClock clock = new ManualEpochClock(now);
+        WechatPay2Validator validator = new WechatPay2Validator(
+                new CertificatesVerifier(Collections.singletonList(certificate.getCertificate())), clock);
+        assertTrue(validator.validate(signedResponse(body, body, now - 299)));
+        assertTrue(validator.validate(signedResponse(body, body, now + 299)));
+        assertFalse(validator.validate(signedResponse(body, body, now - 300)));
+        assertFalse(validator.validate(signedResponse(body, body, now + 300)));
+        assertFalse(validator.validate(signedResponse(body, body, Long.MIN_VALUE)));
+
+        clock.advance(-1);
+        assertTrue(validator.validate(signedResponse(body, body, now - 300)));
+    }
+
+    @Test
+    public void diagnoseReportsReason() throws Exception {
+        byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+        long now = 1650000000L;
+        WechatPay2Validator validator = new WechatPay2Validator(
+                new CertificatesVerifier(Collections.singletonList(certificate.getCertificate())),
+                new ManualEpochClock(now));
+        assertNull(validator.diagnose(signedResponse(body, body, now)));
+        assertEquals(ValidationFailure.EXPIRED, validator.diagnose(signedResponse(body, body, now - 300)));
+        assertEquals(ValidationFailure.SIGNATURE_MISMATCH,
+                validator.diagnose(signedResponse(body, "{ }".getBytes(StandardCharsets.UTF_8), now)));
+
+        CloseableHttpResponse unknownSerial = signedResponse(body, body, now);
+        unknownSerial.setHeader(WECHAT_PAY_SERIAL, "5157F09EFDC096DE15EBE81A47057A7232F1B8E1");
+        assertEquals(ValidationFailure.UNKNOWN_SERIAL, validator.diagnose(unknownSerial));
+
+        CloseableHttpResponse response = signedResponse(body, body, now);
+        response.removeHeaders(WECHAT_PAY_NONCE);
+        assertEquals(ValidationFailure.INVALID_HEADER, validator.diagnose(response));
+    }
+
+    private static CloseableHttpResponse signedResponse(byte[] signedBody, byte[] body) throws Exception {
+        return signedResponse(signedBody, body, System.currentTimeMillis() / 1000);
+    }
+
+    private static CloseableHttpResponse signedResponse(byte[] signedBody, byte[] body, long epochSeconds)
+            throws Exception {
+        String timestamp = String.valueOf(epochSeconds);
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        message.write((timestamp + "\n" + nonce + "\n").getBytes(StandardCharsets.UTF_8));
+        message.write(signedBody);
+        message.write('\n');
+
+        StubResponse response = new StubResponse();
+        response.setEntity(new ByteArrayEntity(body, ContentType.create("application/json")));
+        response.addHeader(REQUEST_ID, "08F78BB5AF0610D302A0E8DA9B3E0A");
+        response.addHeader(WECHAT_PAY_SERIAL, certificate.getSerialNumber());
+        response.addHeader(WECHAT_PAY_SIGNATURE, certificate.sign(message.toByteArray()));
+        response.addHeader(WECHAT_PAY_NONCE, nonce);
+        response.addHeader(WECHAT_PAY_TIMESTAMP, timestamp);
+        return response;
+    }
+
+    private static class StubResponse extends BasicHttpResponse implements CloseableHttpResponse {
+
+        StubResponse() {
+            super(HttpVersion.HTTP_1_1, 200, "OK");
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
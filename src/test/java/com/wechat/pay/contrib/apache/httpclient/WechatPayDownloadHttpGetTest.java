@@ -0,0 +1,100 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import com.wechat.pay.contrib.apache.httpclient.exception.ValidationException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.zip.GZIPOutputStream;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WechatPayDownloadHttpGetTest {
+
+    private static final URI downloadUrl = URI.create(
+            "https://api.mch.weixin.qq.com/v3/billdownload/file?token=6XIv5TUPto7pByrTQKhd6kwvyKLG2uY2wMMR8cNXqaA_Cv_isgaUtBzp4QtiozLO");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeToOutputStream() throws Exception {
+        byte[] bill = bill();
+        WechatPayDownloadHttpGet get = new WechatPayDownloadHttpGet.Builder(downloadUrl)
+                .withHash("SHA1", hex("SHA-1", bill))
+                .build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(bill.length, get.writeTo(response(bill), out));
+        assertArrayEquals(bill, out.toByteArray());
+    }
+
+    @Test
+    public void writeGzipToPath() throws Exception {
+        byte[] bill = bill();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(bill);
+        }
+        WechatPayDownloadHttpGet get = new WechatPayDownloadHttpGet.Builder(downloadUrl)
+                .withHash("SHA256", hex("SHA-256", bill).toUpperCase())
+                .withTarType("GZIP")
+                .build();
+        Path target = folder.getRoot().toPath().resolve("bills").resolve("tradebill.csv");
+        assertEquals(bill.length, get.writeTo(response(compressed.toByteArray()), target));
+        assertArrayEquals(bill, Files.readAllBytes(target));
+    }
+
+    @Test
+    public void tamperedFileIsRejected() throws Exception {
+        byte[] bill = bill();
+        WechatPayDownloadHttpGet get = new WechatPayDownloadHttpGet.Builder(downloadUrl)
+                .withHash("SHA1", hex("SHA-1", bill))
+                .build();
+        bill[bill.length - 1] = 'x';
+        Path target = folder.getRoot().toPath().resolve("tradebill.csv");
+        try {
+            get.writeTo(response(bill), target);
+            fail();
+        } catch (ValidationException expected) {
+            // 摘要不一致时不留下目标文件和临时文件
+        }
+        assertFalse(Files.exists(target));
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    private static HttpResponse response(byte[] body) {
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.setEntity(new InputStreamEntity(new ByteArrayInputStream(body), body.length));
+        return response;
+    }
+
+    private static byte[] bill() {
+        StringBuilder bill = new StringBuilder("交易时间,公众账号ID,商户号,特约商户号,设备号,微信订单号,商户订单号\n");
+        for (int i = 0; i < 5000; i++) {
+            bill.append("`2022-04-01 10:00:00,`wx8888888888888888,`1900009191,`0,`,`42000012342022040112345")
+                    .append(i).append(",`ORDER").append(i).append('\n');
+        }
+        return bill.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String hex(String algorithm, byte[] data) throws Exception {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance(algorithm).digest(data)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,171 @@
+package com.wechat.pay.contrib.apache.httpclient;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Random;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WechatPayUploadHttpPostTest {
+
+    private static final URI uri = URI.create("https://api.mch.weixin.qq.com/v3/merchant/media/video_upload");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void uploadFromPath() throws Exception {
+        byte[] content = new byte[3 * 1024 * 1024 + 17];
+        new Random(7).nextBytes(content);
+        Path file = folder.getRoot().toPath().resolve("video.mp4");
+        Files.write(file, content);
+
+        WechatPayUploadHttpPost post = new WechatPayUploadHttpPost.Builder(uri).withImage(file).build();
+        assertEquals("{\"filename\":\"video.mp4\",\"sha256\":\"" + sha256Hex(content) + "\"}", post.getMeta());
+
+        HttpEntity entity = post.getEntity();
+        assertTrue(entity.isRepeatable());
+        byte[] first = writeEntity(entity);
+        assertEquals(entity.getContentLength(), first.length);
+        assertTrue(contains(first, content));
+        // 可重复读取，每次都从文件重新读
+        assertEquals(first.length, writeEntity(entity).length);
+    }
+
+    @Test
+    public void uploadFromChannelPosition() throws Exception {
+        byte[] content = "0123456789".getBytes(StandardCharsets.US_ASCII);
+        Path file = folder.getRoot().toPath().resolve("image.png");
+        Files.write(file, content);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.position(4);
+            WechatPayUploadHttpPost post = new WechatPayUploadHttpPost.Builder(uri)
+                    .withImage("image.png", channel)
+                    .build();
+            byte[] tail = "456789".getBytes(StandardCharsets.US_ASCII);
+            assertTrue(post.getMeta().contains(sha256Hex(tail)));
+            byte[] body = writeEntity(post.getEntity());
+            assertTrue(contains(body, tail));
+            assertTrue(new String(body, StandardCharsets.UTF_8).contains("Content-Type: image/png"));
+        }
+    }
+
+    @Test
+    public void inputStreamUploadCanBeRetried() throws Exception {
+        byte[] content = new byte[256 * 1024];
+        new Random(11).nextBytes(content);
+        WechatPayUploadHttpPost post = new WechatPayUploadHttpPost.Builder(uri)
+                .withImage("video.mp4", "sha256", new ByteArrayInputStream(content))
+                .withSpoolThreshold(16 * 1024)
+                .build();
+        HttpEntity entity = post.getEntity();
+        assertTrue(entity.isRepeatable());
+
+        // 第一次发送到一半连接被重置
+        OutputStream broken = new OutputStream() {
+            private int written;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (++written > 100 * 1024) {
+                    throw new IOException("Connection reset");
+                }
+            }
+        };
+        try {
+            entity.writeTo(broken);
+            fail();
+        } catch (IOException expected) {
+        }
+        byte[] retried = writeEntity(entity);
+        assertTrue(contains(retried, content));
+        assertArrayEquals(retried, writeEntity(entity));
+
+        post.close();
+        try {
+            entity.writeTo(new ByteArrayOutputStream());
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void truncatedSpillFileFailsInsteadOfSpinning() throws Exception {
+        byte[] content = new byte[64 * 1024];
+        new Random(13).nextBytes(content);
+        SpoolingBody body = new SpoolingBody(new ByteArrayInputStream(content), ContentType.APPLICATION_OCTET_STREAM,
+                "video.mp4", 1024);
+        body.writeTo(new ByteArrayOutputStream());
+
+        Field spill = SpoolingBody.class.getDeclaredField("spill");
+        spill.setAccessible(true);
+        ((FileChannel) spill.get(body)).truncate(1024);
+        try {
+            body.writeTo(new ByteArrayOutputStream());
+            fail();
+        } catch (IOException expected) {
+            // 临时文件被截断时报错，不会一直重试
+        } finally {
+            body.close();
+        }
+    }
+
+    @Test
+    public void inputStreamIsNotSpooledByDefault() throws Exception {
+        byte[] content = "0123456789".getBytes(StandardCharsets.US_ASCII);
+        try (WechatPayUploadHttpPost post = new WechatPayUploadHttpPost.Builder(uri)
+                .withImage("image.png", "sha256", new ByteArrayInputStream(content))
+                .build()) {
+            HttpEntity entity = post.getEntity();
+            assertFalse(entity.isRepeatable());
+            assertTrue(contains(writeEntity(entity), content));
+        }
+    }
+
+    private static byte[] writeEntity(HttpEntity entity) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static boolean contains(byte[] data, byte[] part) {
+        outer:
+        for (int i = 0; i <= data.length - part.length; i++) {
+            for (int j = 0; j < part.length; j++) {
+                if (data[i + j] != part[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static String sha256Hex(byte[] data) throws Exception {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(data)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}